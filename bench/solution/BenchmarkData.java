@@ -0,0 +1,131 @@
+package solution;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.DataLoadingException;
+import baseclasses.Pilot;
+
+/**
+ * Loads the sample data for the benchmarks, and makes larger fleets and crews out of it.
+ * The data is read from ./data, the same as Main, unless the bench.data system property gives another directory
+ */
+public class BenchmarkData {
+
+	/**
+	 * Returns the path of one of the data files
+	 * @param file the file's name, e.g. "aircraft.csv"
+	 * @return its path
+	 */
+	public static Path path(String file) {
+		return Paths.get(System.getProperty("bench.data", "./data"), file);
+	}
+
+	/**
+	 * Loads the sample fleet the given number of times over, with the copies' tail codes ending -1, -2 and so on
+	 * @param copies how many of each aircraft there should be
+	 * @return the DAO holding them
+	 * @throws DataLoadingException if the sample can't be loaded
+	 */
+	public static AircraftDAO aircraft(int copies) throws DataLoadingException {
+
+		AircraftDAO sample = new AircraftDAO();
+		sample.loadAircraftData(path("aircraft.csv"));
+
+		List<Aircraft> fleet = new ArrayList<>();
+
+		for(int k = 0; k < copies; k++)
+		{
+			for(Aircraft a : sample.getAllAircraft())
+			{
+				Aircraft copy = new Aircraft();
+				copy.setTailCode(k == 0 ? a.getTailCode() : a.getTailCode() + "-" + k);
+				copy.setTypeCode(a.getTypeCode());
+				copy.setManufacturer(a.getManufacturer());
+				copy.setModel(a.getModel());
+				copy.setSeats(a.getSeats());
+				copy.setCabinCrewRequired(a.getCabinCrewRequired());
+				copy.setStartingPosition(a.getStartingPosition());
+				fleet.add(copy);
+			}
+		}
+
+		AircraftDAO dao = new AircraftDAO();
+		dao.addAll(fleet);
+		return dao;
+	}
+
+	/**
+	 * Loads the sample crew the given number of times over, with the copies' surnames ending -1, -2 and so on
+	 * @param copies how many of each crew member there should be
+	 * @return the DAO holding them
+	 * @throws DataLoadingException if the sample can't be loaded
+	 */
+	public static CrewDAO crew(int copies) throws DataLoadingException {
+
+		CrewDAO sample = new CrewDAO();
+		sample.loadCrewData(path("crew.json"));
+
+		List<Pilot> pilots = new ArrayList<>();
+		List<CabinCrew> cabinCrew = new ArrayList<>();
+
+		for(int k = 0; k < copies; k++)
+		{
+			String suffix = k == 0 ? "" : "-" + k;
+
+			for(Pilot p : sample.getAllPilots())
+			{
+				Pilot copy = new Pilot();
+				copy.setForename(p.getForename());
+				copy.setSurname(p.getSurname() + suffix);
+				copy.setHomeBase(p.getHomeBase());
+				copy.setRank(p.getRank());
+				p.getTypeRatings().forEach(copy::setQualifiedFor);
+				pilots.add(copy);
+			}
+
+			for(CabinCrew c : sample.getAllCabinCrew())
+			{
+				CabinCrew copy = new CabinCrew();
+				copy.setForename(c.getForename());
+				copy.setSurname(c.getSurname() + suffix);
+				copy.setHomeBase(c.getHomeBase());
+				c.getTypeRatings().forEach(copy::setQualifiedFor);
+				cabinCrew.add(copy);
+			}
+		}
+
+		CrewDAO dao = new CrewDAO();
+		dao.addAll(pilots, cabinCrew);
+		return dao;
+	}
+
+	/**
+	 * Loads the sample routes
+	 * @return the DAO holding them
+	 * @throws DataLoadingException if they can't be loaded
+	 */
+	public static RouteDAO routes() throws DataLoadingException {
+
+		RouteDAO dao = new RouteDAO();
+		dao.loadRouteData(path("routes.xml"));
+		return dao;
+	}
+
+	/**
+	 * Loads every sample passenger number
+	 * @return the DAO holding them
+	 * @throws DataLoadingException if they can't be loaded
+	 */
+	public static PassengerNumbersDAO passengers() throws DataLoadingException {
+
+		PassengerNumbersDAO dao = new PassengerNumbersDAO();
+		dao.loadPassengerNumbersData(path("passengernumbers.db"));
+		return dao;
+	}
+
+}
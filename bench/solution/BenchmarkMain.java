@@ -0,0 +1,31 @@
+package solution;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so each one reports its allocation rate as well as its throughput.
+ * The benchmarks are in their own Eclipse project in the bench folder, which depends on the main project and needs
+ * the JMH jars in bench/lib (jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3). Its annotation
+ * processing is switched on, which generates the benchmark list JMH runs from.
+ * From the command line, after building src into bin:
+ *   javac -cp "bin:lib/*:bench/lib/*" -d bench-bin bench/solution/*.java
+ *   java -cp "bench-bin:bin:lib/*:bench/lib/*" solution.BenchmarkMain [regex of benchmarks to run]
+ * Use -Dbench.data=dir if the data files aren't in ./data
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "solution\\..*Benchmark")
+				.addProfiler(GCProfiler.class)
+				.build();
+
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,428 @@
+package solution;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.json.JSONWriter;
+
+/**
+ * The DataGenerator writes made-up aircraft, crew, route and passenger number files in the same formats as the
+ * sample data, at whatever scale is wanted, for load testing the DAOs and the Scheduler.
+ * The files agree with each other - aircraft and crew are based at the route airports, crew are rated for the
+ * aircraft types, and there is a forecast for each route on each day it flies - and the same seed always gives
+ * the same files. Everything is written as it is generated, so file size isn't limited by memory.
+ * Run it with key=value arguments, e.g. dir=./bigdata aircraft=100000 routesPerDay=5000
+ */
+public class DataGenerator {
+
+	//type code, manufacturer, seats, cabin crew required
+	private static final Object[][] TYPES = {
+			{"A319", "Airbus", 144, 3},
+			{"A320", "Airbus", 180, 4},
+			{"A321", "Airbus", 220, 5},
+			{"B738", "Boeing", 189, 4},
+			{"E190", "Embraer", 100, 2},
+			{"DH8D", "Bombardier", 78, 2},
+			{"AT76", "ATR", 70, 2},
+	};
+
+	//used first, before made-up codes
+	private static final String[] AIRPORTS = {"LHR", "MAN", "EDI", "GLA", "BHD", "DUB", "CDG", "AMS", "BRS", "NCL", "ABZ", "SOU"};
+
+	private static final String[] DAYS = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+
+	//rows inserted into the database per batch
+	private static final int BATCH = 10_000;
+
+	private long seed = 0;
+	private int aircraft = 60;
+	private int pilots = 200;
+	private int cabinCrew = 400;
+	private int airports = 10;
+	private int routesPerDay = 20;
+	private int forecastDays = 120;
+	private LocalDate forecastStart = LocalDate.parse("2021-06-01");
+
+	/**
+	 * Writes all four files into a directory, named as in the sample data
+	 * @param args key=value pairs: dir (default ./data), seed, aircraft, pilots, cabinCrew, airports, routesPerDay, forecastDays, forecastStart,
+	 * and index=true to index the passenger numbers database for the OnDemandPassengerNumbersDAO
+	 * @throws Exception if anything can't be written
+	 */
+	public static void main(String[] args) throws Exception {
+
+		DataGenerator generator = new DataGenerator();
+		Path dir = Paths.get("./data");
+		boolean index = false;
+
+		for(String arg : args)
+		{
+			int eq = arg.indexOf('=');
+
+			if(eq < 0)
+			{
+				throw new IllegalArgumentException("expected key=value, not " + arg);
+			}
+
+			String key = arg.substring(0, eq);
+			String value = arg.substring(eq + 1);
+
+			switch(key)
+			{
+			case "dir": dir = Paths.get(value); break;
+			case "seed": generator.setSeed(Long.parseLong(value)); break;
+			case "aircraft": generator.setAircraft(Integer.parseInt(value)); break;
+			case "pilots": generator.setPilots(Integer.parseInt(value)); break;
+			case "cabinCrew": generator.setCabinCrew(Integer.parseInt(value)); break;
+			case "airports": generator.setAirports(Integer.parseInt(value)); break;
+			case "routesPerDay": generator.setRoutesPerDay(Integer.parseInt(value)); break;
+			case "forecastDays": generator.setForecastDays(Integer.parseInt(value)); break;
+			case "forecastStart": generator.setForecastStart(LocalDate.parse(value)); break;
+			case "index": index = Boolean.parseBoolean(value); break;
+			default: throw new IllegalArgumentException("unknown setting " + key);
+			}
+		}
+
+		long start = System.nanoTime();
+		generator.writeAll(dir);
+
+		if(index)
+		{
+			OnDemandPassengerNumbersDAO.createIndex(dir.resolve("passengernumbers.db"));
+		}
+		System.out.println("Wrote " + dir + " in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+	}
+
+	/**
+	 * Writes aircraft.csv, crew.json, routes.xml and passengernumbers.db into a directory, creating it if needed
+	 * @param dir the directory
+	 * @throws IOException if a file can't be written
+	 * @throws SQLException if the database can't be written
+	 * @throws XMLStreamException if the routes can't be written
+	 */
+	public void writeAll(Path dir) throws IOException, SQLException, XMLStreamException {
+
+		Files.createDirectories(dir);
+		writeAircraft(dir.resolve("aircraft.csv"));
+		writeCrew(dir.resolve("crew.json"));
+		writeRoutes(dir.resolve("routes.xml"));
+		writePassengerNumbers(dir.resolve("passengernumbers.db"));
+	}
+
+	/**
+	 * Writes the aircraft CSV, with each aircraft's type and starting airport chosen at random
+	 * @param p the file to write
+	 * @throws IOException if it can't be written
+	 */
+	public void writeAircraft(Path p) throws IOException {
+
+		Random random = random(1);
+		List<String> codes = airportCodes();
+
+		try (Writer out = Files.newBufferedWriter(p, StandardCharsets.UTF_8)) {
+
+			out.write("Tailcode,Model,Type,Manufacturer,StartingPosition,Seats,CabinCrewRequired\n");
+
+			for(int i = 0; i < aircraft; i++)
+			{
+				Object[] type = TYPES[random.nextInt(TYPES.length)];
+
+				out.write(tailCode(i));
+				out.write(',');
+				out.write(type[0] + " model," + type[0] + "," + type[1] + ",");
+				out.write(codes.get(random.nextInt(codes.size())));
+				out.write("," + type[2] + "," + type[3] + "\n");
+			}
+		}
+	}
+
+	/**
+	 * Writes the crew JSON, half the pilots captains and half first officers, each crew member rated for one to three types
+	 * @param p the file to write
+	 * @throws IOException if it can't be written
+	 */
+	public void writeCrew(Path p) throws IOException {
+
+		Random random = random(2);
+		List<String> codes = airportCodes();
+
+		try (BufferedWriter out = Files.newBufferedWriter(p, StandardCharsets.UTF_8)) {
+
+			JSONWriter json = new JSONWriter(out);
+			json.object().key("pilots").array();
+
+			for(int i = 0; i < pilots; i++)
+			{
+				crewMember(json, random, codes, "P", i);
+				json.key("rank").value(i % 2 == 0 ? "Captain" : "First_Officer");
+				json.endObject();
+			}
+
+			json.endArray().key("cabincrew").array();
+
+			for(int i = 0; i < cabinCrew; i++)
+			{
+				crewMember(json, random, codes, "C", i);
+				json.endObject();
+			}
+
+			json.endArray().endObject();
+		}
+	}
+
+	//writes the fields pilots and cabin crew share, leaving the object open
+	private static void crewMember(JSONWriter json, Random random, List<String> codes, String prefix, int i) {
+
+		json.object()
+				.key("forename").value("F" + prefix + i)
+				.key("surname").value("S" + prefix + i)
+				.key("home_airport").value(codes.get(random.nextInt(codes.size())))
+				.key("type_ratings").array();
+
+		int first = random.nextInt(TYPES.length);
+		int ratings = 1 + random.nextInt(Math.min(3, TYPES.length));
+
+		for(int k = 0; k < ratings; k++)
+		{
+			json.value(TYPES[(first + k) % TYPES.length][0]);
+		}
+		json.endArray();
+	}
+
+	/**
+	 * Writes the routes XML, routesPerDay routes for each day of the week with flight numbers from 100
+	 * @param p the file to write
+	 * @throws IOException if it can't be written
+	 * @throws XMLStreamException if the XML can't be written
+	 */
+	public void writeRoutes(Path p) throws IOException, XMLStreamException {
+
+		List<String> codes = airportCodes();
+
+		try (OutputStream out = Files.newOutputStream(p)) {
+
+			XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+			xml.writeStartDocument("UTF-8", "1.0");
+			xml.writeCharacters("\n");
+			xml.writeStartElement("Routes");
+			xml.writeCharacters("\n");
+
+			for(int i = 0; i < 7 * routesPerDay; i++)
+			{
+				//each route comes from its own random, so the passenger numbers can work out the same routes without storing them
+				Random random = routeRandom(i);
+				String from = codes.get(random.nextInt(codes.size()));
+				String to = codes.get((codes.indexOf(from) + 1 + random.nextInt(codes.size() - 1)) % codes.size());
+				LocalTime departure = LocalTime.of(6 + random.nextInt(16), 15 * random.nextInt(4));
+				Duration duration = Duration.ofMinutes(60 + 15 * random.nextInt(13));
+
+				xml.writeStartElement("Route");
+				element(xml, "FlightNumber", Integer.toString(100 + i));
+				element(xml, "DayOfWeek", DAYS[i % 7]);
+				element(xml, "DepartureTime", departure.toString());
+				element(xml, "DepartureAirport", from + " Airport");
+				element(xml, "DepartureAirportIATACode", from);
+				element(xml, "ArrivalAirport", to + " Airport");
+				element(xml, "ArrivalAirportIATACode", to);
+				element(xml, "ArrivalTime", departure.plus(duration).toString());
+				element(xml, "Duration", duration.toString());
+				xml.writeEndElement();
+				xml.writeCharacters("\n");
+			}
+
+			xml.writeEndElement();
+			xml.writeEndDocument();
+			xml.close();
+		}
+	}
+
+	private static void element(XMLStreamWriter xml, String name, String text) throws XMLStreamException {
+		xml.writeStartElement(name);
+		xml.writeCharacters(text);
+		xml.writeEndElement();
+	}
+
+	/**
+	 * Writes the passenger numbers database, a forecast for every route on each day it flies from forecastStart
+	 * for forecastDays days, replacing the file if it exists
+	 * @param p the file to write
+	 * @throws IOException if an old file can't be removed
+	 * @throws SQLException if the database can't be written
+	 */
+	public void writePassengerNumbers(Path p) throws IOException, SQLException {
+
+		Files.deleteIfExists(p);
+		Random random = random(4);
+
+		try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + p)) {
+
+			try (Statement s = c.createStatement()) {
+				s.execute("PRAGMA journal_mode = OFF");
+				s.execute("PRAGMA synchronous = OFF");
+				s.execute("CREATE TABLE PassengerNumbers(Date TEXT, FlightNumber INTEGER, LoadEstimate INTEGER)");
+			}
+
+			c.setAutoCommit(false);
+
+			try (PreparedStatement insert = c.prepareStatement("INSERT INTO PassengerNumbers VALUES (?, ?, ?)")) {
+
+				int batched = 0;
+
+				for(int d = 0; d < forecastDays; d++)
+				{
+					LocalDate date = forecastStart.plusDays(d);
+					int day = date.getDayOfWeek().getValue() - 1;
+
+					//routes i where i % 7 is the day fly on it
+					for(int i = day; i < 7 * routesPerDay; i += 7)
+					{
+						insert.setString(1, date.toString());
+						insert.setInt(2, 100 + i);
+						insert.setInt(3, 40 + random.nextInt(200));
+						insert.addBatch();
+
+						if(++batched == BATCH)
+						{
+							insert.executeBatch();
+							batched = 0;
+						}
+					}
+				}
+				insert.executeBatch();
+			}
+			c.commit();
+		}
+	}
+
+	//the airport codes in use: the real ones first, then made-up three letter ones that don't clash with them
+	private List<String> airportCodes() {
+
+		List<String> codes = new ArrayList<>();
+		Set<String> used = new HashSet<>();
+
+		for(int i = 0; i < airports && i < AIRPORTS.length; i++)
+		{
+			codes.add(AIRPORTS[i]);
+			used.add(AIRPORTS[i]);
+		}
+
+		for(int n = 0; codes.size() < airports; n++)
+		{
+			String code = "" + (char) ('A' + n / 676) + (char) ('A' + n / 26 % 26) + (char) ('A' + n % 26);
+
+			if(used.add(code))
+			{
+				codes.add(code);
+			}
+		}
+		return codes;
+	}
+
+	private static String tailCode(int i) {
+
+		String code = Integer.toString(i, 36).toUpperCase();
+		return "G-" + "0000".substring(Math.min(code.length(), 4)) + code;
+	}
+
+	//a separate stream for each file, so changing one setting doesn't change the other files
+	private Random random(int file) {
+		return new Random(seed * 31 + file);
+	}
+
+	private Random routeRandom(int route) {
+		return new Random((seed * 31 + 3) * 1_000_003 + route);
+	}
+
+	/**
+	 * Sets the seed, the same seed and settings always give the same files
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets the number of aircraft
+	 * @param aircraft the number of aircraft
+	 */
+	public void setAircraft(int aircraft) {
+		this.aircraft = aircraft;
+	}
+
+	/**
+	 * Sets the number of pilots
+	 * @param pilots the number of pilots
+	 */
+	public void setPilots(int pilots) {
+		this.pilots = pilots;
+	}
+
+	/**
+	 * Sets the number of cabin crew
+	 * @param cabinCrew the number of cabin crew
+	 */
+	public void setCabinCrew(int cabinCrew) {
+		this.cabinCrew = cabinCrew;
+	}
+
+	/**
+	 * Sets the number of airports, from 2 up to 17576
+	 * @param airports the number of airports
+	 */
+	public void setAirports(int airports) {
+
+		if(airports < 2 || airports > 26 * 26 * 26)
+		{
+			throw new IllegalArgumentException("airports must be from 2 to 17576, not " + airports);
+		}
+		this.airports = airports;
+	}
+
+	/**
+	 * Sets the number of routes flown on each day of the week
+	 * @param routesPerDay the number of routes per day
+	 */
+	public void setRoutesPerDay(int routesPerDay) {
+		this.routesPerDay = routesPerDay;
+	}
+
+	/**
+	 * Sets the number of days there are forecasts for
+	 * @param forecastDays the number of days
+	 */
+	public void setForecastDays(int forecastDays) {
+		this.forecastDays = forecastDays;
+	}
+
+	/**
+	 * Sets the first day there are forecasts for
+	 * @param forecastStart the first day
+	 */
+	public void setForecastStart(LocalDate forecastStart) {
+		this.forecastStart = forecastStart;
+	}
+
+}
@@ -0,0 +1,57 @@
+package solution;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import baseclasses.DataLoadingException;
+
+/**
+ * Measures loading each of the sample data files into a new DAO
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+	@Benchmark
+	public AircraftDAO loadAircraftData() throws DataLoadingException {
+
+		AircraftDAO dao = new AircraftDAO();
+		dao.loadAircraftData(BenchmarkData.path("aircraft.csv"));
+		return dao;
+	}
+
+	@Benchmark
+	public CrewDAO loadCrewData() throws DataLoadingException {
+
+		CrewDAO dao = new CrewDAO();
+		dao.loadCrewData(BenchmarkData.path("crew.json"));
+		return dao;
+	}
+
+	@Benchmark
+	public RouteDAO loadRouteData() throws DataLoadingException {
+
+		RouteDAO dao = new RouteDAO();
+		dao.loadRouteData(BenchmarkData.path("routes.xml"));
+		return dao;
+	}
+
+	@Benchmark
+	public PassengerNumbersDAO loadPassengerNumbersData() throws DataLoadingException {
+
+		PassengerNumbersDAO dao = new PassengerNumbersDAO();
+		dao.loadPassengerNumbersData(BenchmarkData.path("passengernumbers.db"));
+		return dao;
+	}
+
+}
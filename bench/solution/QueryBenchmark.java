@@ -0,0 +1,132 @@
+package solution;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import baseclasses.Aircraft;
+import baseclasses.DataLoadingException;
+import baseclasses.Pilot;
+import baseclasses.Route;
+
+/**
+ * Measures the DAO lookups the Scheduler and its callers rely on, cycling through keys taken from the sample data
+ * so that no single answer gets cached or folded away
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryBenchmark {
+
+	private AircraftDAO aircraft;
+	private CrewDAO crew;
+	private RouteDAO routes;
+	private PassengerNumbersDAO passengers;
+
+	private String[] tailCodes;
+	private String[] typeCodes;
+	private String[] homeBases;
+	private LocalDate[] dates;
+	private int[] flightNumbers;
+	private LocalDate[] flightDates;
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void load() throws DataLoadingException {
+
+		aircraft = BenchmarkData.aircraft(1);
+		crew = BenchmarkData.crew(1);
+		routes = BenchmarkData.routes();
+		passengers = BenchmarkData.passengers();
+
+		tailCodes = aircraft.getAllAircraft().stream().map(Aircraft::getTailCode).toArray(String[]::new);
+
+		//each pilot's home base with each of their ratings, so most lookups find somebody
+		List<String> types = new ArrayList<>();
+		List<String> bases = new ArrayList<>();
+
+		for(Pilot p : crew.getAllPilots())
+		{
+			for(String type : p.getTypeRatings())
+			{
+				types.add(type);
+				bases.add(p.getHomeBase());
+			}
+		}
+		typeCodes = types.toArray(new String[0]);
+		homeBases = bases.toArray(new String[0]);
+
+		LocalDate start = LocalDate.parse("2021-07-01");
+		dates = new LocalDate[62];
+
+		for(int i = 0; i < dates.length; i++)
+		{
+			dates[i] = start.plusDays(i);
+		}
+
+		List<Integer> numbers = new ArrayList<>();
+		List<LocalDate> days = new ArrayList<>();
+
+		for(LocalDate d : dates)
+		{
+			for(Route r : routes.findRoutesbyDate(d))
+			{
+				numbers.add(r.getFlightNumber());
+				days.add(d);
+			}
+		}
+		flightNumbers = numbers.stream().mapToInt(Integer::intValue).toArray();
+		flightDates = days.toArray(new LocalDate[0]);
+	}
+
+	private int next(int length) {
+
+		if(++next >= length)
+		{
+			next = 0;
+		}
+		return next;
+	}
+
+	@Benchmark
+	public Aircraft findAircraftByTailCode() {
+		return aircraft.findAircraftByTailCode(tailCodes[next(tailCodes.length)]);
+	}
+
+	@Benchmark
+	public List<Pilot> findPilotsByHomeBaseAndTypeRating() {
+
+		int i = next(typeCodes.length);
+		return crew.findPilotsByHomeBaseAndTypeRating(typeCodes[i], homeBases[i]);
+	}
+
+	@Benchmark
+	public List<Route> findRoutesbyDate() {
+		return routes.findRoutesbyDate(dates[next(dates.length)]);
+	}
+
+	@Benchmark
+	public int getPassengerNumbersFor() {
+
+		int i = next(flightNumbers.length);
+		return passengers.getPassengerNumbersFor(flightNumbers[i], flightDates[i]);
+	}
+
+}
@@ -0,0 +1,66 @@
+package solution;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import baseclasses.DataLoadingException;
+import baseclasses.Schedule;
+
+/**
+ * Measures generating a schedule from ready-loaded DAOs, with the sample fleet and crew copied
+ * the given number of times over, for horizons of the given number of days from 2021-07-01
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchedulerBenchmark {
+
+	@Param({"1", "4"})
+	public int fleet;
+
+	@Param({"1", "4"})
+	public int crew;
+
+	@Param({"7", "62", "365"})
+	public int days;
+
+	private AircraftDAO aircraftDAO;
+	private CrewDAO crewDAO;
+	private RouteDAO routeDAO;
+	private PassengerNumbersDAO passengerNumbersDAO;
+
+	private final LocalDate startDate = LocalDate.parse("2021-07-01");
+	private LocalDate endDate;
+
+	@Setup(Level.Trial)
+	public void load() throws DataLoadingException {
+
+		aircraftDAO = BenchmarkData.aircraft(fleet);
+		crewDAO = BenchmarkData.crew(crew);
+		routeDAO = BenchmarkData.routes();
+		passengerNumbersDAO = BenchmarkData.passengers();
+		endDate = startDate.plusDays(days - 1);
+	}
+
+	@Benchmark
+	public Schedule generateSchedule() {
+		return new Scheduler().generateSchedule(aircraftDAO, crewDAO, routeDAO, passengerNumbersDAO, startDate, endDate);
+	}
+
+}
@@ -1,12 +1,20 @@
 package solution;
-import java.io.BufferedReader;
-
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import baseclasses.Aircraft;
 import baseclasses.DataLoadingException;
@@ -19,104 +27,266 @@ import baseclasses.IAircraftDAO;
  */
 public class AircraftDAO implements IAircraftDAO {
 	
-	//The data structure we'll use to store the aircraft we've loaded
-	List<Aircraft> aircraft = new ArrayList<>();
+	//files are parsed in chunks of between 8MB and 1GB (the most a single mapping can hold)
+	private static final long MIN_CHUNK = 8L << 20;
+	private static final long MAX_CHUNK = 1L << 30;
+	
+	private static final Aircraft.Manufacturer[] MANUFACTURERS = Aircraft.Manufacturer.values();
+	
+	//what loading and the finders record in Metrics
+	private static final Metrics.Timer LOAD = Metrics.timer("load.aircraft");
+	private static final Metrics.Counter LOAD_ROWS = Metrics.counter("load.aircraft.rows");
+	private static final Metrics.Counter LOAD_BYTES = Metrics.counter("load.aircraft.bytes");
+	private static final Metrics.Timer QUERY_BY_SEATS = Metrics.timer("query.aircraft.bySeats");
+	private static final Metrics.Timer QUERY_BY_STARTING_POSITION = Metrics.timer("query.aircraft.byStartingPosition");
+	private static final Metrics.Timer QUERY_BY_TAIL_CODE = Metrics.timer("query.aircraft.byTailCode");
+	private static final Metrics.Timer QUERY_BY_TYPE = Metrics.timer("query.aircraft.byType");
+	
+	//everything loaded, replaced as a whole by each load or reset so the finders never see half a load
+	private volatile Data data = new Data();
 	
 	/**
 	 * Loads the aircraft data from the specified file, adding them to the currently loaded aircraft
 	 * Multiple calls to this function, perhaps on different files, would thus be cumulative
 	 * @param p A Path pointing to the file from which data could be loaded
 	 * @throws DataLoadingException if anything goes wrong. The exception's "cause" indicates the underlying exception
-     *
-	 * Initially, this contains some starter code to help you get started in reading the CSV file...
 	 */
 	@Override
 	public void loadAircraftData(Path p) throws DataLoadingException {	
-		try {
-			//open the file
-			BufferedReader reader = Files.newBufferedReader(p);
+		loadAircraftData(p, 1);
+	}
+	
+	/**
+	 * Loads the aircraft data from the specified file, splitting it into chunks that are parsed on up to
+	 * the given number of threads and then added in file order, exactly as a single-threaded load would
+	 * If a row is bad, the aircraft before it are still added and the DataLoadingException wraps the same cause
+	 * If the thread is interrupted the parse stops between rows and nothing is added
+	 * @param p A Path pointing to the file from which data could be loaded
+	 * @param parallelism the number of threads to parse with, 1 parses on the calling thread
+	 * @throws DataLoadingException if anything goes wrong. The exception's "cause" indicates the underlying exception
+	 */
+	public void loadAircraftData(Path p, int parallelism) throws DataLoadingException {
+		
+		long t = Metrics.start();
+		
+		try (FileChannel channel = FileChannel.open(p, StandardOpenOption.READ)) {
 			
-			//read the file line by line
-			String line = "";
+			LOAD_BYTES.add(channel.size());
+			List<long[]> chunks = splitIntoChunks(channel, Math.max(1, parallelism));
+			List<ChunkResult> results = new ArrayList<>();
 			
-			try {
-			//skip the first line of the file - headers
-			reader.readLine();
+			if(parallelism <= 1 || chunks.size() == 1)
+			{
+				for(int i=0;i<chunks.size();i++)
+				{
+					results.add(parseChunk(channel, chunks.get(i), i == 0));
+				}
 			}
-			catch(IOException ioe) 
+			else
 			{
-				throw new DataLoadingException(ioe);
+				ForkJoinPool pool = new ForkJoinPool(parallelism);
+				
+				try {
+					//submitted one by one rather than with invokeAll, whose wait can't be interrupted
+					List<Future<ChunkResult>> parsing = new ArrayList<>();
+					
+					for(int i=0;i<chunks.size();i++)
+					{
+						long[] chunk = chunks.get(i);
+						boolean header = i == 0;
+						parsing.add(pool.submit(() -> parseChunk(channel, chunk, header)));
+					}
+					
+					for(Future<ChunkResult> f : parsing)
+					{
+						results.add(f.get());
+					}
+				}
+				finally
+				{
+					//only still running if this thread was interrupted, and then the chunks are interrupted too
+					pool.shutdownNow();
+				}
 			}
 			
-			while( (line = reader.readLine()) != null) {
-				//each line has fields separated by commas, split into an array of fields
-				String[] fields = line.split(",");
-			
+			//an interrupted load is abandoned, however much was parsed
+			if(Thread.currentThread().isInterrupted())
+			{
+				throw new InterruptedException("aircraft load interrupted");
+			}
 			
+			//merge in file order, stopping at the first bad row just like the line by line loader did
+			//the aircraft before a bad row are still added
+			List<Aircraft> loaded = new ArrayList<>();
+			Exception failure = null;
 			
-				//put some of the fields into variables: check which fields are where atop the CSV file itself
-				
-				try {
-					
-					String tailcode = fields[0];
-					String type = fields[2];
-					String pos = fields[4];
-					String manu = fields[3];
-					String model = fields[1];
-					int crew = Integer.parseInt(fields[6]);
-					int seats = Integer.parseInt(fields[5]);
-
-					//create an Aircraft object, and set (some of) its properties
-					Aircraft a = new Aircraft();
-				
-					a.setModel(model);
-					a.setTailCode(tailcode);
-					a.setTypeCode(type);
-					a.setSeats(seats);
-					a.setStartingPosition(pos);
-					a.setCabinCrewRequired(crew);
-					a.setManufacturer(Aircraft.Manufacturer.valueOf(manu.toUpperCase()));
-				
-					//add the aircraft to our list
-					aircraft.add(a);
+			for(ChunkResult r : results)
+			{
+				loaded.addAll(r.aircraft);
 				
-				}
-				catch(Exception e)
+				if(r.failure != null)
 				{
-					throw new DataLoadingException(e);
+					failure = r.failure;
+					break;
 				}
-				//System.out.println("Aircraft: " + tailcode + " is a " + type + " with " + seats + " seats.");
 			}
 			
+			addAll(loaded);
+			LOAD_ROWS.add(loaded.size());
+			
+			if(failure != null)
+			{
+				throw new DataLoadingException(failure);
+			}
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new DataLoadingException(ie);
+		}
+		catch (ExecutionException ee) {
+			throw new DataLoadingException(ee.getCause());
 		}
-		
 		catch (IOException |  NullPointerException ioe) {
 			//There was a problem reading the file
 			
 			throw new DataLoadingException(ioe);
 		}
+		finally
+		{
+			LOAD.stop(t);
+		}
 
 	}
 	
+	/**
+	 * Splits the file into [start, end) byte ranges that each begin at the start of a line
+	 * Ranges are at least MIN_CHUNK long, so small files are parsed in one go
+	 */
+	private static List<long[]> splitIntoChunks(FileChannel channel, int parallelism) throws IOException {
+		
+		long size = channel.size();
+		long target = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, size / (parallelism * 4L) + 1));
+		
+		List<long[]> chunks = new ArrayList<>();
+		ByteBuffer probe = ByteBuffer.allocate(8192);
+		long start = 0;
+		
+		while(start < size)
+		{
+			long end = Math.min(size, start + target);
+			
+			//move the boundary to just after the next \n so no line (or \r\n pair) is cut in half
+			while(end < size)
+			{
+				probe.clear();
+				int n = channel.read(probe, end);
+				int i = 0;
+				
+				while(i < n && probe.get(i) != '\n')
+				{
+					i++;
+				}
+				end += i;
+				
+				if(i < n)
+				{
+					end++;
+					break;
+				}
+			}
+			chunks.add(new long[] {start, end});
+			start = end;
+		}
+		return chunks;
+	}
+	
+	/**
+	 * Parses one chunk of the file into aircraft, stopping at the first bad row
+	 */
+	private static ChunkResult parseChunk(FileChannel channel, long[] chunk, boolean skipHeader) {
+		
+		ChunkResult result = new ChunkResult();
+		
+		try {
+			CsvTokenizer csv = new CsvTokenizer(channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]));
+			
+			//skip the first line of the file - headers
+			if(skipHeader)
+			{
+				csv.nextRecord();
+			}
+			
+			while(csv.nextRecord())
+			{
+				if(Thread.interrupted())
+				{
+					Thread.currentThread().interrupt();//kept set for the loading thread to see
+					result.failure = new InterruptedException("aircraft load interrupted");
+					break;
+				}
+				
+				//check which fields are where atop the CSV file itself
+				Aircraft a = new Aircraft();
+				
+				a.setTailCode(csv.field(0));
+				a.setModel(csv.field(1));
+				a.setTypeCode(csv.field(2));
+				a.setManufacturer(manufacturer(csv, 3));
+				a.setStartingPosition(csv.field(4));
+				a.setSeats(csv.intField(5));
+				a.setCabinCrewRequired(csv.intField(6));
+				
+				result.aircraft.add(a);
+			}
+		}
+		catch(Exception e)
+		{
+			result.failure = e;
+		}
+		return result;
+	}
+	
+	/**
+	 * Matches a manufacturer field case-insensitively without upper-casing a copy of it,
+	 * falling back to valueOf so unknown manufacturers fail exactly as before
+	 */
+	private static Aircraft.Manufacturer manufacturer(CsvTokenizer csv, int field) throws IOException {
+		
+		for(Aircraft.Manufacturer m : MANUFACTURERS)
+		{
+			if(csv.fieldEqualsUpperCase(field, m.name()))
+			{
+				return m;
+			}
+		}
+		return Aircraft.Manufacturer.valueOf(csv.field(field).toUpperCase());
+	}
+	
+	//the aircraft parsed from one chunk, and the problem that stopped it if there was one
+	private static class ChunkResult {
+		List<Aircraft> aircraft = new ArrayList<>();
+		Exception failure;
+	}
+	
 	/**
 	 * Returns a list of all the loaded Aircraft with at least the specified number of seats
+	 * The list is ordered by seat count, smallest first
 	 * @param seats the number of seats required
 	 * @return a List of all the loaded aircraft with at least this many seats
 	 */
 	@Override
 	public List<Aircraft> findAircraftBySeats(int seats) {
 
+		long t = Metrics.start();
 		List<Aircraft> aircraftSeats = new ArrayList<>();
 		
-		
-			for (Aircraft a : aircraft)
-			{
-				if (a.getSeats() >= seats)
-				{
-					aircraftSeats.add(a);
-				}
-			}
+		//every seat count at or above the requested one, smallest first
+		for (List<Aircraft> bucket : data.bySeats.tailMap(seats, true).values())
+		{
+			aircraftSeats.addAll(bucket);
+		}
 	
+		QUERY_BY_SEATS.stop(t);
 		return aircraftSeats;
 	}
 
@@ -128,20 +298,11 @@ public class AircraftDAO implements IAircraftDAO {
 	@Override
 	public List<Aircraft> findAircraftByStartingPosition(String startingPosition) {
 		
-		List<Aircraft> aircraftPos = new ArrayList<>();
-		
-		
-			for (Aircraft b : aircraft)
-			{
-				//System.out.println(b.getStartingPosition());
-				
-				if(b.getStartingPosition().equals(startingPosition))
-				{
-					aircraftPos.add(b);
-				}
-			}
+		long t = Metrics.start();
+		List<Aircraft> found = new ArrayList<>(data.byStartingPosition.getOrDefault(startingPosition, Collections.emptyList()));
 		
-		return aircraftPos;
+		QUERY_BY_STARTING_POSITION.stop(t);
+		return found;
 	}
 
 	/**
@@ -152,25 +313,11 @@ public class AircraftDAO implements IAircraftDAO {
 	@Override
 	public Aircraft findAircraftByTailCode(String tailCode) {
 
-		try 
-		{
-		
-			for (Aircraft a : aircraft) 
-			{
-				//if object tail code is the same as the input it will return the indexed position of the aircraft array list
-				if(a.getTailCode().equals(tailCode))
-				{
-					return aircraft.get(aircraft.indexOf(a));
-				}
-			}
-			
-		}
-		catch(Exception e)
-		{
-			System.err.println("Error has occured:"+ e);
-		}
+		long t = Metrics.start();
+		Aircraft found = data.byTailCode.get(tailCode);
 		
-		return null;
+		QUERY_BY_TAIL_CODE.stop(t);
+		return found;
 	}
 
 	/**
@@ -181,19 +328,11 @@ public class AircraftDAO implements IAircraftDAO {
 	@Override
 	public List<Aircraft> findAircraftByType(String typeCode) {
 		
-		List<Aircraft> aircraftType = new ArrayList<>();
-		
+		long t = Metrics.start();
+		List<Aircraft> found = new ArrayList<>(data.byType.getOrDefault(typeCode, Collections.emptyList()));
 		
-			for (Aircraft a : aircraft) 
-			{
-				if(a.getTypeCode().equals(typeCode))
-				{
-					aircraftType.add(a);
-				}
-
-			}
-			
-		return aircraftType;
+		QUERY_BY_TYPE.stop(t);
+		return found;
 	}
 
 	/**
@@ -205,7 +344,7 @@ public class AircraftDAO implements IAircraftDAO {
 		
 		List<Aircraft> allAir = new ArrayList<>();
 		
-		allAir.addAll(aircraft);
+		allAir.addAll(data.aircraft);
 		
 		return allAir;
 	}
@@ -217,16 +356,177 @@ public class AircraftDAO implements IAircraftDAO {
 	@Override
 	public int getNumberOfAircraft() 
 	{
-		return aircraft.size() ;
+		return data.aircraft.size() ;
 	}
 
 	/**
 	 * Unloads all of the aircraft currently loaded, ready to start again if needed
 	 */
 	@Override
-	public void reset() 
+	public synchronized void reset() 
+	{
+		data = new Data();
+	}
+	
+	/**
+	 * Adds aircraft to the loaded list and to every index, by copying what is loaded, adding to the copy
+	 * and then replacing it, so the finders see all of them or none
+	 * Loads are serialised with each other, but never with the finders
+	 * @param added the aircraft to add, in order
+	 */
+	synchronized void addAll(List<Aircraft> added)
+	{
+		Data next = new Data(data);
+		added.forEach(next::add);
+		data = next;
+	}
+
+	/**
+	 * Applies the changes found by reloading the file: changed aircraft take the place of the ones they replace,
+	 * removed ones are dropped and added ones go on the end, so every other aircraft keeps its place
+	 * Only the index entries of the aircraft in the delta are touched, and the finders see all of it or none
+	 * @param delta the changes, against what is loaded now
+	 */
+	synchronized void apply(DataDelta<Aircraft> delta)
 	{
-		aircraft.clear();
+		Data next = new Data(data);
+		next.apply(delta);
+		data = next;
+	}
+
+	/**
+	 * The loaded aircraft and the indexes built as they are loaded, so the finders don't have to scan the whole list
+	 * A Data is only changed while it is being built, before it is published in the data field,
+	 * so any number of threads can read it after that without locking
+	 */
+	private static class Data {
+		
+		final List<Aircraft> aircraft;
+		final Map<String, Aircraft> byTailCode;
+		final Map<String, List<Aircraft>> byType;
+		final Map<String, List<Aircraft>> byStartingPosition;
+		final NavigableMap<Integer, List<Aircraft>> bySeats;
+		//the aircraft after the first with a tail code that is loaded more than once, in order, to take its place if it goes
+		final Map<String, List<Aircraft>> repeated;
+		
+		Data() {
+			aircraft = new ArrayList<>();
+			byTailCode = new HashMap<>();
+			byType = new HashMap<>();
+			byStartingPosition = new HashMap<>();
+			bySeats = new TreeMap<>();
+			repeated = new HashMap<>();
+		}
+		
+		//a copy to add to, down to the lists in the indexes, so the original is left as it was
+		Data(Data from) {
+			aircraft = new ArrayList<>(from.aircraft);
+			byTailCode = new HashMap<>(from.byTailCode);
+			byType = copy(from.byType, new HashMap<>());
+			byStartingPosition = copy(from.byStartingPosition, new HashMap<>());
+			bySeats = copy(from.bySeats, new TreeMap<>());
+			repeated = copy(from.repeated, new HashMap<>());
+		}
+		
+		//if the tail code is already loaded the first aircraft with that code is kept for tail code lookups
+		void add(Aircraft a)
+		{
+			aircraft.add(a);
+			
+			if(byTailCode.putIfAbsent(a.getTailCode(), a) != null)
+			{
+				repeated.computeIfAbsent(a.getTailCode(), k -> new ArrayList<>()).add(a);
+			}
+			byType.computeIfAbsent(a.getTypeCode(), k -> new ArrayList<>()).add(a);
+			byStartingPosition.computeIfAbsent(a.getStartingPosition(), k -> new ArrayList<>()).add(a);
+			bySeats.computeIfAbsent(a.getSeats(), k -> new ArrayList<>()).add(a);
+		}
+
+		void apply(DataDelta<Aircraft> delta)
+		{
+			DataDelta.applyTo(aircraft, delta);
+
+			for(Aircraft a : delta.getRemoved())
+			{
+				DataDelta.unindex(byType, a.getTypeCode(), a);
+				DataDelta.unindex(byStartingPosition, a.getStartingPosition(), a);
+				DataDelta.unindex(bySeats, a.getSeats(), a);
+
+				String code = a.getTailCode();
+				List<Aircraft> next = repeated.get(code);
+
+				if(byTailCode.get(code) != a)
+				{
+					DataDelta.unindex(repeated, code, a);
+				}
+				else if(next == null || next.isEmpty())
+				{
+					byTailCode.remove(code);
+				}
+				else
+				{
+					//the next aircraft with the code is now the first
+					byTailCode.put(code, next.remove(0));
+				}
+
+				if(next != null && next.isEmpty())
+				{
+					repeated.remove(code);
+				}
+			}
+
+			//which changed aircraft are first with their code, found before any is replaced, as with a code loaded
+			//more than once one aircraft's new record can be the next one's old record
+			int changed = delta.getUpdatedBefore().size();
+			boolean[] first = new boolean[changed];
+
+			for(int i = 0; i < changed; i++)
+			{
+				Aircraft was = delta.getUpdatedBefore().get(i);
+				first[i] = byTailCode.get(was.getTailCode()) == was;
+			}
+
+			//last first, so each record is replaced before it becomes another aircraft's new record
+			for(int i = changed - 1; i >= 0; i--)
+			{
+				Aircraft was = delta.getUpdatedBefore().get(i);
+				Aircraft now = delta.getUpdatedAfter().get(i);
+
+				DataDelta.reindex(byType, was.getTypeCode(), was, now.getTypeCode(), now);
+				DataDelta.reindex(byStartingPosition, was.getStartingPosition(), was, now.getStartingPosition(), now);
+				DataDelta.reindex(bySeats, was.getSeats(), was, now.getSeats(), now);
+
+				//a changed aircraft is in the same place in the list, so if it was first with its code it still is
+				if(first[i])
+				{
+					byTailCode.put(was.getTailCode(), now);
+				}
+				else
+				{
+					DataDelta.reindex(repeated, was.getTailCode(), was, now.getTailCode(), now);
+				}
+			}
+
+			for(Aircraft a : delta.getAdded())
+			{
+				if(byTailCode.putIfAbsent(a.getTailCode(), a) != null)
+				{
+					repeated.computeIfAbsent(a.getTailCode(), k -> new ArrayList<>()).add(a);
+				}
+				byType.computeIfAbsent(a.getTypeCode(), k -> new ArrayList<>()).add(a);
+				byStartingPosition.computeIfAbsent(a.getStartingPosition(), k -> new ArrayList<>()).add(a);
+				bySeats.computeIfAbsent(a.getSeats(), k -> new ArrayList<>()).add(a);
+			}
+		}
+
+		private static <K, M extends Map<K, List<Aircraft>>> M copy(Map<K, List<Aircraft>> from, M to) {
+			
+			for(Map.Entry<K, List<Aircraft>> e : from.entrySet())
+			{
+				to.put(e.getKey(), new ArrayList<>(e.getValue()));
+			}
+			return to;
+		}
 	}
 
 }
@@ -0,0 +1,306 @@
+package solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+import baseclasses.Aircraft;
+import baseclasses.FlightInfo;
+
+/**
+ * The AircraftSelector picks the aircraft for each flight during scheduling.
+ * It keeps track of where every aircraft currently is, and ranks the likely candidates -
+ * aircraft already at the departure airport, and aircraft whose seats are close to the forecast -
+ * by a cost, so the same inputs always give the same choice and no aircraft is checked twice
+ */
+public class AircraftSelector {
+
+	//aircraft within this many seats of the forecast are always considered, 100 seemed best when experimenting
+	public static final int SEAT_WINDOW = 100;
+
+	//the cost of an aircraft having to start somewhere other than the departure airport, in seats
+	public static final int POSITION_PENALTY = 150;
+
+	//each aircraft tried is counted in Metrics along with the crew the FlightAllocator tries
+	private static final Metrics.Counter CANDIDATES = Metrics.counter("schedule.candidates");
+
+	private final List<Aircraft> fleet;
+	private final NavigableMap<Integer, BitSet> bySeats = new TreeMap<>();
+	
+	//reused for every flight
+	private final BitSet likely = new BitSet();
+	private final BitSet rest = new BitSet();
+
+	//where each aircraft is, by id, and which aircraft are at each airport
+	private String[] position;
+	private final Map<String, BitSet> atAirport = new HashMap<>();
+
+	//each aircraft's flights by departure minute, to the airport they arrive at, so a released flight's move can be undone
+	private final List<NavigableMap<Long, String>> moves = new ArrayList<>();
+
+	//the latest departure allocated; a flight before it is chosen for by where each aircraft was at the time, in these
+	private long latest = Long.MIN_VALUE;
+	private String[] then = new String[0];
+	private final BitSet thenHere = new BitSet();
+	
+	//added to each cost when set, so repeated runs can try different aircraft
+	private Random random;
+	private int noise;
+
+	/**
+	 * Creates a selector for the given fleet, with every aircraft at its starting position
+	 * @param fleet the aircraft to choose from, each one's id is its position in this list (as in the ResourceRegistry);
+	 * ties in cost go to the lowest id
+	 */
+	public AircraftSelector(List<Aircraft> fleet) {
+
+		this.fleet = new ArrayList<>(fleet.size());
+		this.position = new String[fleet.size()];
+
+		for(Aircraft a : fleet)
+		{
+			add(a);
+		}
+	}
+
+	/**
+	 * Adds an aircraft to the fleet at its starting position, giving it the next id
+	 * @param a the aircraft
+	 */
+	public void add(Aircraft a) {
+
+		int id = fleet.size();
+		fleet.add(a);
+
+		if(id == position.length)
+		{
+			position = Arrays.copyOf(position, id + 1);
+		}
+		bySeats.computeIfAbsent(a.getSeats(), k -> new BitSet()).set(id);
+		moves.add(new TreeMap<>());
+		moveTo(id, a.getStartingPosition());
+	}
+
+	/**
+	 * Chooses the cheapest aircraft for the flight that isn't in conflict
+	 * The aircraft at the departure airport or within SEAT_WINDOW seats of the forecast are ranked and tried first,
+	 * then the rest of the fleet, so at most every aircraft is checked once
+	 * Each aircraft is taken to be where its last flight before this one left it, so a flight earlier than ones
+	 * already allocated, as when repairing a schedule, is chosen for as it would have been in departure order
+	 * @param f the flight to choose an aircraft for
+	 * @param passengers the forecast number of passengers, or -1 if there isn't one
+	 * @param busy the ids of the aircraft known to be busy at the time of the flight, which aren't considered
+	 * @param conflicts the final check on whether an aircraft, by id, can be used for the flight
+	 * @return the chosen aircraft's id, or -1 if every aircraft is busy
+	 */
+	public int select(FlightInfo f, int passengers, BitSet busy, IntPredicate conflicts) {
+
+		String departure = f.getFlight().getDepartureAirportCode();
+		long minute = IntervalIndex.departure(f);
+
+		String[] at = position;
+		BitSet here = atAirport.get(departure);
+
+		if(minute <= latest)
+		{
+			at = positionsAt(minute);
+			here = thenHere;
+			here.clear();
+
+			for(int i = 0; i < at.length; i++)
+			{
+				if(departure.equals(at[i]))
+				{
+					here.set(i);
+				}
+			}
+		}
+
+		likely.clear();
+
+		if(here != null)
+		{
+			likely.or(here);
+		}
+
+		int target = Math.max(passengers, 0);
+
+		for(BitSet b : bySeats.subMap(target - SEAT_WINDOW, true, target + SEAT_WINDOW, true).values())
+		{
+			likely.or(b);
+		}
+		likely.andNot(busy);
+
+		int a = cheapestFree(likely, departure, passengers, conflicts, at);
+
+		if(a == -1)
+		{
+			rest.clear();
+			rest.set(0, fleet.size());
+			rest.andNot(likely);
+			rest.andNot(busy);
+			a = cheapestFree(rest, departure, passengers, conflicts, at);
+		}
+		return a;
+	}
+
+	/**
+	 * Adds a random amount between 0 and noise to every cost, so the choice isn't always the cheapest
+	 * @param random where the amounts come from, or null to go back to always choosing the cheapest
+	 * @param noise the most that is added, in seats
+	 */
+	public void setNoise(Random random, int noise) {
+		this.random = random;
+		this.noise = noise;
+	}
+
+	/**
+	 * Records that the aircraft will fly the flight, so it is at the flight's arrival airport from then on
+	 * An aircraft is where its latest flight arrives, so flights should be allocated in departure order for the positions to be right
+	 * @param id the id of the aircraft allocated
+	 * @param f the flight it was allocated to
+	 */
+	public void allocated(int id, FlightInfo f) {
+
+		long minute = IntervalIndex.departure(f);
+		NavigableMap<Long, String> flown = moves.get(id);
+
+		flown.put(minute, f.getFlight().getArrivalAirportCode());
+		moveTo(id, flown.lastEntry().getValue());
+		latest = Math.max(latest, minute);
+	}
+
+	/**
+	 * Takes back a flight the aircraft was allocated to, so it is where its latest remaining flight arrives,
+	 * or at its starting position if it has none
+	 * @param id the id of the aircraft
+	 * @param f the flight it was allocated to
+	 */
+	public void released(int id, FlightInfo f) {
+
+		NavigableMap<Long, String> flown = moves.get(id);
+		flown.remove(IntervalIndex.departure(f));
+		moveTo(id, flown.isEmpty() ? fleet.get(id).getStartingPosition() : flown.lastEntry().getValue());
+	}
+
+	/**
+	 * Forgets the flights departing before the given minute, apart from each aircraft's latest, to save memory
+	 * once none of them will be released
+	 * @param minute the epoch minute, as given by IntervalIndex.minutes()
+	 */
+	public void forgetBefore(long minute) {
+
+		for(NavigableMap<Long, String> flown : moves)
+		{
+			while(flown.size() > 1 && flown.firstKey() < minute)
+			{
+				flown.pollFirstEntry();
+			}
+		}
+	}
+
+	/**
+	 * Returns the airport an aircraft was at just before a given minute: where the last flight it was allocated
+	 * that departs before then arrives, or its starting position if there is none
+	 * @param id the aircraft's id
+	 * @param minute the epoch minute, as given by IntervalIndex.minutes()
+	 * @return the airport code of where it was
+	 */
+	public String positionAt(int id, long minute) {
+
+		Map.Entry<Long, String> before = moves.get(id).lowerEntry(minute);
+		return before == null ? fleet.get(id).getStartingPosition() : before.getValue();
+	}
+
+	//every aircraft's positionAt() the minute, in an array reused for every flight
+	private String[] positionsAt(long minute) {
+
+		if(then.length < fleet.size())
+		{
+			then = new String[fleet.size()];
+		}
+		for(int i = 0; i < fleet.size(); i++)
+		{
+			then[i] = positionAt(i, minute);
+		}
+		return then;
+	}
+
+	/**
+	 * The cost of using an aircraft for a flight: how far its seats are from the forecast (seats short count double),
+	 * plus POSITION_PENALTY if it isn't already at the departure airport
+	 * @param a the aircraft
+	 * @param passengers the forecast, or -1 if there isn't one, in which case seats don't matter
+	 * @param atDeparture whether the aircraft is at the departure airport
+	 * @return the cost, lower is better
+	 */
+	public static int cost(Aircraft a, int passengers, boolean atDeparture) {
+
+		return (atDeparture ? 0 : POSITION_PENALTY) + seatCost(a.getSeats(), passengers);
+	}
+
+	/**
+	 * How far a number of seats is from the forecast, with seats short counting double
+	 * @param seats the number of seats
+	 * @param passengers the forecast, or -1 if there isn't one, in which case the cost is 0
+	 * @return the cost, lower is better
+	 */
+	public static int seatCost(int seats, int passengers) {
+
+		if(passengers < 0)
+		{
+			return 0;
+		}
+
+		int spare = seats - passengers;
+		return spare >= 0 ? spare : -2 * spare;
+	}
+
+	private int cheapestFree(BitSet candidates, String departure, int passengers, IntPredicate conflicts, String[] at) {
+
+		//sort by cost then id in one go by packing both into a long
+		long[] ranked = new long[candidates.cardinality()];
+		int n = 0;
+
+		for(int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+		{
+			long cost = cost(fleet.get(i), passengers, departure.equals(at[i]));
+
+			if(random != null)
+			{
+				cost += random.nextInt(noise + 1);
+			}
+			ranked[n++] = (cost << 32) | i;
+		}
+		Arrays.sort(ranked);
+
+		for(int k = 0; k < n; k++)
+		{
+			if(! conflicts.test((int) ranked[k]))
+			{
+				CANDIDATES.add(k + 1);
+				return (int) ranked[k];
+			}
+		}
+		CANDIDATES.add(n);
+		return -1;
+	}
+
+	private void moveTo(int id, String airport) {
+
+		if(position[id] != null)
+		{
+			atAirport.get(position[id]).clear(id);
+		}
+		position[id] = airport;
+		atAirport.computeIfAbsent(airport, k -> new BitSet()).set(id);
+	}
+
+}
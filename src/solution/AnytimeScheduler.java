@@ -0,0 +1,180 @@
+package solution;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.IScheduler;
+import baseclasses.Schedule;
+
+/**
+ * The AnytimeScheduler makes a schedule within a time budget. It starts with the same schedule as the
+ * Scheduler, then keeps making new ones with varied choices, and when the budget runs out (or it is cancelled)
+ * returns the best one it finished: the one with the most flights completed, then the lowest total cost.
+ * If even the first schedule couldn't be finished in time, the flights it did complete are returned
+ */
+public class AnytimeScheduler implements IScheduler {
+
+	//leaves time to spare inside the 2 minutes a schedule must be made in
+	public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(100);
+
+	//the share of flights whose choices are varied in each round after the first, in turn; small changes to the first schedule do best
+	static final double[] RATES = {0.01, 0.02, 0.05, 0.1};
+
+	private final Duration budget;
+	private final long seed;
+	private volatile boolean cancelled;
+	private volatile int rounds;
+
+	/**
+	 * Creates a scheduler with the DEFAULT_BUDGET
+	 */
+	public AnytimeScheduler() {
+		this(DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Creates a scheduler with the given budget
+	 * @param budget how long generateSchedule may take
+	 */
+	public AnytimeScheduler(Duration budget) {
+		this(budget, 0);
+	}
+
+	/**
+	 * Creates a scheduler with the given budget, varying its choices from the given seed
+	 * The same seed and data give the same sequence of schedules, so only how many are made depends on timing
+	 * @param budget how long generateSchedule may take
+	 * @param seed the seed for the varied choices
+	 */
+	public AnytimeScheduler(Duration budget, long seed) {
+
+		if(budget.isNegative())
+		{
+			throw new IllegalArgumentException("budget can't be negative: " + budget);
+		}
+		this.budget = budget;
+		this.seed = seed;
+	}
+
+	/**
+	 * Asks generateSchedule to stop and return the best schedule it has, which it does after the flight it is on
+	 * A cancelled scheduler stays cancelled, so any later call returns after the first flight.
+	 * Interrupting the thread calling generateSchedule has the same effect for that call
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Returns whether cancel() has been called
+	 * @return true if cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Returns the number of schedules the last call to generateSchedule finished, including the first
+	 * @return the number of schedules made
+	 */
+	public int getRounds() {
+		return rounds;
+	}
+
+	/**
+	 * Generates the best schedule it can within the budget
+	 * @param aircraftDAO the DAO for the aircraft to be used when scheduling
+	 * @param crewDAO the DAO for the crew to be used when scheduling
+	 * @param routeDAO the DAO to use for routes when scheduling
+	 * @param passengerNumbersDAO the DAO to use for passenger numbers when scheduling
+	 * @param startDate the start of the scheduling horizon
+	 * @param endDate the end of the scheduling horizon
+	 * @return the best schedule found before the budget ran out or the scheduler was cancelled
+	 */
+	@Override
+	public Schedule generateSchedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO,
+			IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate) {
+
+		long deadline = System.nanoTime() + budget.toNanos();
+		rounds = 0;
+
+		ResourceRegistry registry = new ResourceRegistry(aircraftDAO, crewDAO);
+		int[] pass = null;
+
+		Schedule best = null;
+		int bestCompleted = -1;
+		long bestCost = Long.MAX_VALUE;
+
+		for(int round = 0; ; round++)
+		{
+			//every round needs its own Schedule, as flights can't be unallocated
+			Schedule s = new Schedule(routeDAO, startDate, endDate);
+			List<FlightInfo> flights = s.getRemainingAllocations();
+
+			if(pass == null)
+			{
+				pass = Scheduler.passengersFor(flights, passengerNumbersDAO, startDate, endDate);
+			}
+
+			FlightAllocator allocator = new FlightAllocator(registry);
+
+			if(round > 0)
+			{
+				allocator.setRandom(new Random(seed + round), RATES[round % RATES.length]);
+			}
+
+			int completed = 0;
+			long cost = 0;
+			boolean finished = true;
+
+			for(int i = 0; i < flights.size(); i++)
+			{
+				if(stopping(deadline))
+				{
+					finished = false;
+					break;
+				}
+
+				FlightAllocator.Allocation plan = allocator.plan(flights.get(i), pass[i], s);
+
+				//only the first round says why flights couldn't be completed, the others would just repeat it
+				if(Scheduler.complete(s, flights.get(i), plan, allocator, round == 0))
+				{
+					completed++;
+					cost += plan.cost;
+				}
+			}
+
+			//an unfinished schedule is only better than nothing
+			if(best == null || (finished && (completed > bestCompleted || (completed == bestCompleted && cost < bestCost))))
+			{
+				best = s;
+				bestCompleted = completed;
+				bestCost = cost;
+			}
+
+			if(finished)
+			{
+				rounds++;
+			}
+
+			//nothing can beat a schedule with every flight done perfectly
+			if(! finished || (completed == flights.size() && cost == 0))
+			{
+				return best;
+			}
+		}
+	}
+
+	private boolean stopping(long deadline) {
+		return cancelled || Thread.currentThread().isInterrupted() || System.nanoTime() - deadline >= 0;
+	}
+
+}
@@ -5,11 +5,22 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 import baseclasses.CabinCrew;
 import baseclasses.Crew;
@@ -23,116 +34,261 @@ import baseclasses.Pilot;
  */
 public class CrewDAO implements ICrewDAO {
 	
-	List<CabinCrew> cabinCrew = new ArrayList<>();
-	List<Pilot> pilot = new ArrayList<>();
-	List<Crew> crew = new ArrayList<>();
+	//what loading and the finders record in Metrics
+	private static final Metrics.Timer LOAD = Metrics.timer("load.crew");
+	private static final Metrics.Counter LOAD_ROWS = Metrics.counter("load.crew.rows");
+	private static final Metrics.Counter LOAD_BYTES = Metrics.counter("load.crew.bytes");
+	private static final Metrics.Timer QUERY_CABIN_CREW_BY_HOME_BASE = Metrics.timer("query.cabinCrew.byHomeBase");
+	private static final Metrics.Timer QUERY_CABIN_CREW_BY_HOME_BASE_AND_TYPE_RATING = Metrics.timer("query.cabinCrew.byHomeBaseAndTypeRating");
+	private static final Metrics.Timer QUERY_CABIN_CREW_BY_TYPE_RATING = Metrics.timer("query.cabinCrew.byTypeRating");
+	private static final Metrics.Timer QUERY_PILOTS_BY_HOME_BASE = Metrics.timer("query.pilots.byHomeBase");
+	private static final Metrics.Timer QUERY_PILOTS_BY_HOME_BASE_AND_TYPE_RATING = Metrics.timer("query.pilots.byHomeBaseAndTypeRating");
+	private static final Metrics.Timer QUERY_PILOTS_BY_TYPE_RATING = Metrics.timer("query.pilots.byTypeRating");
+	private static final Metrics.Timer QUERY_PILOTS_BY_RANK = Metrics.timer("query.pilots.byRank");
+	private static final Metrics.Timer QUERY_PILOTS_BY_RANK_AND_TYPE_RATING = Metrics.timer("query.pilots.byRankAndTypeRating");
+	
+	private static final BitSet NONE = new BitSet();
+	
+	//everything loaded, replaced as a whole by each load or reset so the finders never see half a load
+	private volatile Data data = new Data();
 	
 	/**
 	 * Loads the crew data from the specified file, adding them to the currently loaded crew
 	 * Multiple calls to this function, perhaps on different files, would thus be cumulative
+	 * The file is read as a stream, so only one crew member's JSON is held in memory at a time
+	 * If the file isn't valid JSON nothing is added. If a crew member can't be read, the ones before them are
+	 * still added, cabin crew first and then pilots, just as when the whole file was parsed up front
 	 * @param p A Path pointing to the file from which data could be loaded
 	 * @throws DataLoadingException if anything goes wrong. The exception's "cause" indicates the underlying exception
 	 */
 	@Override
 	public void loadCrewData(Path p) throws DataLoadingException {
-		// TODO Auto-generated method stub
-		try {
+
+		long t = Metrics.start();
+		
+		try (BufferedReader reader = Files.newBufferedReader(p)) {
 	
-			BufferedReader reader = Files.newBufferedReader(p);
-			String json = "";
-			String line = "";
-			
-			while((line = reader.readLine())!= null)
-			{
-				json = json + line;
-			
-			}
+			Records<CabinCrew> newCabin = new Records<>();
+			Records<Pilot> newPilots = new Records<>();
 			
 			try {
-				JSONObject root = new JSONObject(json);
-	
-				JSONArray pltArr = root.getJSONArray("pilots");//array of JSON pilots
-				JSONArray cbnArr = root.getJSONArray("cabincrew");//array of JSON cabinCrew
-			
-				//loops through array and gets each object and then places them into the array
-				for (int i=0;i < cbnArr.length();i++)
+				JSONTokener x = new JSONTokener(reader);
+				Set<String> keys = new HashSet<>();
+				
+				if(x.nextClean() != '{')
 				{
+					throw x.syntaxError("A JSONObject text must begin with '{'");
+				}
+				
+				//walk the root object key by key, the same way JSONObject would
+				for(char c = x.nextClean(); c != '}'; )
+				{
+					if(c == 0)
+					{
+						throw x.syntaxError("A JSONObject text must end with '}'");
+					}
+					x.back();
+					String key = x.nextValue().toString();
 					
-					CabinCrew cbn = new CabinCrew();
-					JSONObject cbnObj = cbnArr.getJSONObject(i);
-					
-					JSONArray cbnTypeArr = cbnObj.getJSONArray("type_ratings");
-					
+					if(! keys.add(key))
+					{
+						throw x.syntaxError("Duplicate key \"" + key + "\"");
+					}
+					if(x.nextClean() != ':')
+					{
+						throw x.syntaxError("Expected a ':' after a key");
+					}
 					
-					for(int y = 0;y< cbnTypeArr.length();y++)
+					if(key.equals("pilots"))//array of JSON pilots
 					{
-						cbn.setQualifiedFor(cbnTypeArr.get(y).toString());
+						readRecords(x, key, pltObj -> newPilots.add(pltObj, CrewDAO::toPilot));
+					}
+					else if(key.equals("cabincrew"))//array of JSON cabinCrew
+					{
+						readRecords(x, key, cbnObj -> newCabin.add(cbnObj, CrewDAO::toCabinCrew));
+					}
+					else
+					{
+						x.nextValue();//anything else is skipped over
 					}
 					
-					cbn.setForename(cbnObj.getString("forename"));
-					cbn.setHomeBase(cbnObj.getString("home_airport"));
-					cbn.setSurname(cbnObj.getString("surname"));
+					c = x.nextClean();
 					
-					cabinCrew.add(cbn);
+					if(c == ',' || c == ';')
+					{
+						c = x.nextClean();
+					}
+					else if(c != '}')
+					{
+						throw x.syntaxError("Expected a ',' or '}'");
+					}
 				}
 				
-				
-				
-				for(int i=0;i<pltArr.length();i++)
+				for(String required : new String[] {"pilots", "cabincrew"})
 				{
-					Pilot plt = new Pilot();//import the pilot class for setters
-		
-					JSONObject pltObj = pltArr.getJSONObject(i);//assign object to the JSONArray
-					
-					JSONArray pltTypeArr = pltObj.getJSONArray("type_ratings");
-					
-					
-					for(int y = 0;y< pltTypeArr.length();y++)
+					if(! keys.contains(required))
 					{
-						plt.setQualifiedFor(pltTypeArr.get(y).toString());
+						throw new JSONException("JSONObject[" + JSONObject.quote(required) + "] not found.");
 					}
-					plt.setForename(pltObj.getString("forename"));//get each object and palce into the setters
-					plt.setHomeBase(pltObj.getString("home_airport"));
-					plt.setRank(Pilot.Rank.valueOf(pltObj.getString("rank").toUpperCase()));
-					plt.setSurname(pltObj.getString("surname"));
-					
-					pilot.add(plt);//once all have been set push into array then loop to next one
-					
 				}
-					
 			}
-		
+			catch(JSONException e)
+			{
+				//the tokener wraps read errors, report those as the IOException they really are
+				throw new DataLoadingException(e.getCause() instanceof IOException ? e.getCause() : e);
+			}
 			catch(Exception e)
 			{
 				throw new DataLoadingException(e);
 			}
 			
-		} catch (IOException | JSONException|  NullPointerException e) {
-			// TODO Auto-generated catch block
-			System.out.println("Problem Parsing JSON file: ");
+			//cabin crew were always read first, so a bad cabin crew member means no pilots are added
+			List<Pilot> pilots = newCabin.failure == null ? newPilots.list : new ArrayList<>();
+			addAll(pilots, newCabin.list);
+			
+			if(Metrics.isEnabled())
+			{
+				LOAD_ROWS.add(newCabin.list.size() + pilots.size());
+				LOAD_BYTES.add(Files.size(p));
+			}
+			
+			if(newCabin.failure != null)
+			{
+				throw new DataLoadingException(newCabin.failure);
+			}
+			if(newPilots.failure != null)
+			{
+				throw new DataLoadingException(newPilots.failure);
+			}
+			
+		} catch (IOException | NullPointerException e) {
 			throw new DataLoadingException(e);
+		}
+		finally
+		{
+			LOAD.stop(t);
+		}
+	}
+	
+	//the crew read so far, up to the first who couldn't be, who is kept to report once the whole file has been read
+	private static class Records<T> {
+		final List<T> list = new ArrayList<>();
+		RuntimeException failure;
+		
+		void add(JSONObject o, Function<JSONObject, T> convert) {
 			
+			if(failure != null)
+			{
+				return;
+			}
+			
+			try {
+				list.add(convert.apply(o));
+			}
+			catch(RuntimeException e)
+			{
+				failure = e;
+			}
 		}
 	}
 	
 	/**
-	 * Returns a list of all the cabin crew based at the airport with the specified airport code
-	 * @param airportCode the three-letter airport code of the airport to check for
-	 * @return a list of all the cabin crew based at the airport with the specified airport code
+	 * Reads a JSON array one element at a time, passing each element to the handler as a JSONObject
+	 * so that only one record is ever held in memory
 	 */
-	@Override
-	public List<CabinCrew> findCabinCrewByHomeBase(String airportCode) {
+	private static void readRecords(JSONTokener x, String key, Consumer<JSONObject> handler) {
 		
-		List<CabinCrew> cabinHome = new ArrayList<>();
+		if(x.nextClean() != '[')
+		{
+			x.back();
+			x.nextValue();
+			throw new JSONException("JSONObject[" + JSONObject.quote(key) + "] is not a JSONArray.");
+		}
+		if(x.nextClean() == ']')
+		{
+			return;
+		}
+		x.back();
 		
-		for(CabinCrew c : cabinCrew)
+		for(int i = 0; ; i++)
 		{
-			if(c.getHomeBase().equals(airportCode))
+			char c = x.nextClean();
+			x.back();
+			Object value = c == ',' ? null : x.nextValue();//an empty slot is a null element
+			
+			if(! (value instanceof JSONObject))
 			{
-				cabinHome.add(c);
+				throw new JSONException("JSONArray[" + i + "] is not a JSONObject.");
 			}
+			handler.accept((JSONObject) value);
+			
+			switch(x.nextClean())
+			{
+			case ',':
+				if(x.nextClean() == ']')
+				{
+					return;
+				}
+				x.back();
+				break;
+			case ']':
+				return;
+			default:
+				throw x.syntaxError("Expected a ',' or ']'");
+			}
+		}
+	}
+	
+	/**
+	 * Creates a cabin crew member from their JSON object
+	 */
+	private static CabinCrew toCabinCrew(JSONObject cbnObj) {
+		
+		CabinCrew cbn = new CabinCrew();
+		JSONArray cbnTypeArr = cbnObj.getJSONArray("type_ratings");
+		
+		for(int y = 0;y< cbnTypeArr.length();y++)
+		{
+			cbn.setQualifiedFor(cbnTypeArr.get(y).toString());
+		}
+		
+		cbn.setForename(cbnObj.getString("forename"));
+		cbn.setHomeBase(cbnObj.getString("home_airport"));
+		cbn.setSurname(cbnObj.getString("surname"));
+		
+		return cbn;
+	}
+	
+	/**
+	 * Creates a pilot from their JSON object, the rank must be one of the Pilot.Rank values
+	 */
+	private static Pilot toPilot(JSONObject pltObj) {
+		
+		Pilot plt = new Pilot();
+		JSONArray pltTypeArr = pltObj.getJSONArray("type_ratings");
+		
+		for(int y = 0;y< pltTypeArr.length();y++)
+		{
+			plt.setQualifiedFor(pltTypeArr.get(y).toString());
 		}
-		return cabinHome;
+		plt.setForename(pltObj.getString("forename"));
+		plt.setHomeBase(pltObj.getString("home_airport"));
+		plt.setRank(Pilot.Rank.valueOf(pltObj.getString("rank").toUpperCase()));
+		plt.setSurname(pltObj.getString("surname"));
+		
+		return plt;
+	}
+	
+	/**
+	 * Returns a list of all the cabin crew based at the airport with the specified airport code
+	 * @param airportCode the three-letter airport code of the airport to check for
+	 * @return a list of all the cabin crew based at the airport with the specified airport code
+	 */
+	@Override
+	public List<CabinCrew> findCabinCrewByHomeBase(String airportCode) {
+		
+		Data d = data;
+		return select(QUERY_CABIN_CREW_BY_HOME_BASE, d.cabinCrew, bits(d.cabinByHomeBase, airportCode), null);
 	}
 	
 
@@ -145,22 +301,8 @@ public class CrewDAO implements ICrewDAO {
 	@Override
 	public List<CabinCrew> findCabinCrewByHomeBaseAndTypeRating(String typeCode, String airportCode) {
 		
-		List<CabinCrew> newCabin = new ArrayList<>();
-		
-		for(CabinCrew c : cabinCrew)
-		{
-			if(c.getHomeBase().equals(airportCode))
-			{
-				for(int i=0; i < c.getTypeRatings().size();i++)//if there are multiple types of planes
-				{
-					if(c.getTypeRatings().get(i).equals(typeCode))//checks against input
-					{
-						newCabin.add(c);//adds to list
-					}
-				}	
-			}
-		}
-		return newCabin;
+		Data d = data;
+		return select(QUERY_CABIN_CREW_BY_HOME_BASE_AND_TYPE_RATING, d.cabinCrew, bits(d.cabinByHomeBase, airportCode), bits(d.cabinByTypeRating, typeCode));
 	}
 
 	/**
@@ -171,20 +313,8 @@ public class CrewDAO implements ICrewDAO {
 	@Override
 	public List<CabinCrew> findCabinCrewByTypeRating(String typeCode) {
 		
-		// TODO Auto-generated method stub
-		List<CabinCrew> cbnCode = new ArrayList<>();
-		
-		for(CabinCrew c : cabinCrew)
-		{
-			for(int i=0; i < c.getTypeRatings().size();i++)//if there are multiple types of planes
-			{
-				if(c.getTypeRatings().get(i).equals(typeCode))//checks against input
-				{
-					cbnCode.add(c);//adds to list
-				}
-			}
-		}
-		return cbnCode;
+		Data d = data;
+		return select(QUERY_CABIN_CREW_BY_TYPE_RATING, d.cabinCrew, bits(d.cabinByTypeRating, typeCode), null);
 	}
 	
 
@@ -195,17 +325,9 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Pilot> findPilotsByHomeBase(String airportCode) {
-		// TODO Auto-generated method stub
-		List<Pilot> pilotHome = new ArrayList<>();
 		
-		for(Pilot p : pilot)
-		{
-			if(p.getHomeBase().equals(airportCode))
-			{
-				pilotHome.add(p);
-			}
-		}
-		return pilotHome;
+		Data d = data;
+		return select(QUERY_PILOTS_BY_HOME_BASE, d.pilots, bits(d.pilotsByHomeBase, airportCode), null);
 	}
 
 	/**
@@ -217,22 +339,8 @@ public class CrewDAO implements ICrewDAO {
 	@Override
 	public List<Pilot> findPilotsByHomeBaseAndTypeRating(String typeCode, String airportCode) {
 		
-		List<Pilot> newPilot = new ArrayList<>();
-		
-		for(Pilot p : pilot)
-		{
-			if(p.getHomeBase().equals(airportCode))
-			{
-				for(int i=0; i < p.getTypeRatings().size();i++)//if there are multiple types of planes
-				{
-					if(p.getTypeRatings().get(i).equals(typeCode))//checks against input
-					{
-						newPilot.add(p);//adds to list
-					}
-				}	
-			}
-		}
-		return newPilot;
+		Data d = data;
+		return select(QUERY_PILOTS_BY_HOME_BASE_AND_TYPE_RATING, d.pilots, bits(d.pilotsByHomeBase, airportCode), bits(d.pilotsByTypeRating, typeCode));
 	}
 
 	/**
@@ -243,21 +351,31 @@ public class CrewDAO implements ICrewDAO {
 	@Override
 	public List<Pilot> findPilotsByTypeRating(String typeCode) {
 
-		List<Pilot> pilotRating = new ArrayList<>();
+		Data d = data;
+		return select(QUERY_PILOTS_BY_TYPE_RATING, d.pilots, bits(d.pilotsByTypeRating, typeCode), null);
+	}
+	
+	/**
+	 * Returns a list of all the pilots of the given rank
+	 * @param rank the rank to find pilots for
+	 * @return a list of all the pilots currently loaded with that rank
+	 */
+	public List<Pilot> findPilotsByRank(Pilot.Rank rank) {
 		
-		for(Pilot p : pilot)
-		{
-			
-			for(int i=0; i < p.getTypeRatings().size();i++)//if there are multiple types of planes
-			{
-				
-				if(p.getTypeRatings().get(i).equals(typeCode))//checks against input
-				{
-					pilotRating.add(p);//adds to list
-				}
-			}
-		}
-		return pilotRating;//retuns empty or list of pilots
+		Data d = data;
+		return select(QUERY_PILOTS_BY_RANK, d.pilots, d.pilotsByRank.getOrDefault(rank, NONE), null);
+	}
+	
+	/**
+	 * Returns a list of all the pilots of the given rank who are qualified to fly a specific aircraft type
+	 * @param rank the rank to find pilots for
+	 * @param typeCode the type of plane to find pilots for
+	 * @return a list of all the pilots currently loaded with that rank and type rating
+	 */
+	public List<Pilot> findPilotsByRankAndTypeRating(Pilot.Rank rank, String typeCode) {
+		
+		Data d = data;
+		return select(QUERY_PILOTS_BY_RANK_AND_TYPE_RATING, d.pilots, d.pilotsByRank.getOrDefault(rank, NONE), bits(d.pilotsByTypeRating, typeCode));
 	}
 
 	/**
@@ -266,10 +384,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<CabinCrew> getAllCabinCrew() {
-		// TODO Auto-generated method stub
-		List<CabinCrew> nullCabin = new ArrayList<>();//empty list of pilots if non are there
-		
-		return (cabinCrew != null ? cabinCrew : nullCabin );
+		return new ArrayList<>(data.cabinCrew);
 	}
 
 	/**
@@ -280,10 +395,10 @@ public class CrewDAO implements ICrewDAO {
 	public List<Crew> getAllCrew() {
 		
 		List<Crew> crews = new ArrayList<>();
+		Data d = data;
 		
-		
-		crews.addAll(pilot);
-		crews.addAll(cabinCrew);
+		crews.addAll(d.pilots);
+		crews.addAll(d.cabinCrew);
 
 		return crews;
 	}
@@ -297,15 +412,18 @@ public class CrewDAO implements ICrewDAO {
 		
 		List<Pilot> allPilot = new ArrayList<>();//empty list of pilots if non are there
 		
-		allPilot.addAll(pilot);
+		allPilot.addAll(data.pilots);
 		
 		return allPilot;
 	}
 
+	/**
+	 * Returns the number of cabin crew currently loaded
+	 * @return the number of cabin crew currently loaded
+	 */
 	@Override
 	public int getNumberOfCabinCrew() {
-		// TODO Auto-generated method stub
-		return cabinCrew.size();
+		return data.cabinCrew.size();
 	}
 
 	/**
@@ -314,19 +432,321 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public int getNumberOfPilots() {
-		// TODO Auto-generated method stub
-		return pilot.size();
+		return data.pilots.size();
 	}
 
 	/**
 	 * Unloads all of the crew currently loaded, ready to start again if needed
 	 */
 	@Override
-	public void reset() {
-		pilot.clear();
-		cabinCrew.clear();
-
+	public synchronized void reset() {
+		data = new Data();
+	}
+	
+	/**
+	 * Adds pilots and cabin crew to the loaded lists and to every index, by copying what is loaded, adding to the copy
+	 * and then replacing it, so the finders see all of them or none
+	 * Loads are serialised with each other, but never with the finders
+	 * @param pilots the pilots to add, in order
+	 * @param cabinCrew the cabin crew to add, in order
+	 */
+	synchronized void addAll(List<Pilot> pilots, List<CabinCrew> cabinCrew) {
+		
+		Data next = new Data(data);
+		cabinCrew.forEach(next::addCabinCrew);
+		pilots.forEach(next::addPilot);
+		data = next;
+	}
+	
+	/**
+	 * Applies the changes found by reloading the file: changed crew take the place of the ones they replace and keep
+	 * their ids, and added ones go on the end. Only the index bits of the crew in the delta are touched, and when
+	 * someone is removed those of the crew after them, whose ids move down to close the gap
+	 * The finders see all of it or none
+	 * @param delta the changes, against what is loaded now
+	 */
+	synchronized void apply(DataDelta<Crew> delta) {
+		
+		Data next = new Data(data);
+		next.applyPilots(delta.only(Pilot.class));
+		next.applyCabinCrew(delta.only(CabinCrew.class));
+		data = next;
+	}
+	
+	/**
+	 * Returns the crew loaded now and their indexes, as one consistent snapshot, for the ResourceRegistry to
+	 * use as they are rather than index the crew again. Nothing in it may be changed
+	 * @return the current snapshot
+	 */
+	Data snapshot() {
+		return data;
+	}
+	
+	/**
+	 * The loaded crew and their indexes. Every crew member's id is their position in their list,
+	 * and the bitsets are indexed by that id
+	 * A Data is only changed while it is being built, before it is published in the data field,
+	 * so any number of threads can read it after that without locking
+	 */
+	static class Data {
+		
+		final List<Pilot> pilots;
+		final List<CabinCrew> cabinCrew;
+		final Map<String, BitSet> pilotsByHomeBase;
+		final Map<String, BitSet> pilotsByTypeRating;
+		final Map<Pilot.Rank, BitSet> pilotsByRank;
+		final Map<String, BitSet> cabinByHomeBase;
+		final Map<String, BitSet> cabinByTypeRating;
+		
+		Data() {
+			pilots = new ArrayList<>();
+			cabinCrew = new ArrayList<>();
+			pilotsByHomeBase = new HashMap<>();
+			pilotsByTypeRating = new HashMap<>();
+			pilotsByRank = new EnumMap<>(Pilot.Rank.class);
+			cabinByHomeBase = new HashMap<>();
+			cabinByTypeRating = new HashMap<>();
+		}
+		
+		//the given crew, indexed as a load would index them
+		static Data of(List<Pilot> pilots, List<CabinCrew> cabinCrew) {
+			
+			Data d = new Data();
+			cabinCrew.forEach(d::addCabinCrew);
+			pilots.forEach(d::addPilot);
+			return d;
+		}
+		
+		//a copy to add to, down to the bitsets, so the original is left as it was
+		Data(Data from) {
+			pilots = new ArrayList<>(from.pilots);
+			cabinCrew = new ArrayList<>(from.cabinCrew);
+			pilotsByHomeBase = copy(from.pilotsByHomeBase, new HashMap<>());
+			pilotsByTypeRating = copy(from.pilotsByTypeRating, new HashMap<>());
+			pilotsByRank = copy(from.pilotsByRank, new EnumMap<>(Pilot.Rank.class));
+			cabinByHomeBase = copy(from.cabinByHomeBase, new HashMap<>());
+			cabinByTypeRating = copy(from.cabinByTypeRating, new HashMap<>());
+		}
+		
+		//gives the pilot the next dense id, their position in the pilot list
+		void addPilot(Pilot p) {
+			
+			int id = pilots.size();
+			pilots.add(p);
+			
+			bits(pilotsByHomeBase, p.getHomeBase(), true).set(id);
+			pilotsByRank.computeIfAbsent(p.getRank(), k -> new BitSet()).set(id);
+			
+			for(String type : p.getTypeRatings())
+			{
+				bits(pilotsByTypeRating, type, true).set(id);
+			}
+		}
+		
+		//gives the cabin crew member the next dense id, their position in the cabin crew list
+		void addCabinCrew(CabinCrew c) {
+			
+			int id = cabinCrew.size();
+			cabinCrew.add(c);
+			
+			bits(cabinByHomeBase, c.getHomeBase(), true).set(id);
+			
+			for(String type : c.getTypeRatings())
+			{
+				bits(cabinByTypeRating, type, true).set(id);
+			}
+		}
+		
+		void applyPilots(DataDelta<Pilot> delta) {
+			
+			//removed first, as a changed record can be one that another record's change replaces
+			remove(pilots, delta.getRemoved(), this::indexPilot);
+			Map<Pilot, Integer> ids = ids(pilots, delta.getUpdatedBefore());
+			
+			for(int i = 0; i < delta.getUpdatedBefore().size(); i++)
+			{
+				Pilot was = delta.getUpdatedBefore().get(i);
+				Pilot now = delta.getUpdatedAfter().get(i);
+				int id = ids.get(was);
+				
+				pilots.set(id, now);
+				indexPilot(was, id, false);
+				indexPilot(now, id, true);
+			}
+			delta.getAdded().forEach(this::addPilot);
+		}
+		
+		void applyCabinCrew(DataDelta<CabinCrew> delta) {
+			
+			//removed first, as a changed record can be one that another record's change replaces
+			remove(cabinCrew, delta.getRemoved(), this::indexCabinCrew);
+			Map<CabinCrew, Integer> ids = ids(cabinCrew, delta.getUpdatedBefore());
+			
+			for(int i = 0; i < delta.getUpdatedBefore().size(); i++)
+			{
+				CabinCrew was = delta.getUpdatedBefore().get(i);
+				CabinCrew now = delta.getUpdatedAfter().get(i);
+				int id = ids.get(was);
+				
+				cabinCrew.set(id, now);
+				indexCabinCrew(was, id, false);
+				indexCabinCrew(now, id, true);
+			}
+			delta.getAdded().forEach(this::addCabinCrew);
+		}
+		
+		//sets or clears the pilot's bit in every index they are in
+		private void indexPilot(Pilot p, int id, boolean set) {
+			
+			index(pilotsByHomeBase, p.getHomeBase(), id, set);
+			index(pilotsByRank, p.getRank(), id, set);
+			
+			for(String type : p.getTypeRatings())
+			{
+				index(pilotsByTypeRating, type, id, set);
+			}
+		}
+		
+		//sets or clears the cabin crew member's bit in every index they are in
+		private void indexCabinCrew(CabinCrew c, int id, boolean set) {
+			
+			index(cabinByHomeBase, c.getHomeBase(), id, set);
+			
+			for(String type : c.getTypeRatings())
+			{
+				index(cabinByTypeRating, type, id, set);
+			}
+		}
+		
+		private interface Indexer<T> {
+			void index(T member, int id, boolean set);
+		}
+		
+		/**
+		 * Takes the removed crew out of the list, clearing their bits, and moves each one after the first of them
+		 * down to close the gap, clearing their bit at the old id and setting it at the new one
+		 * The crew before the first removed keep their ids, so none of their bits are touched
+		 */
+		private static <T> void remove(List<T> all, List<T> removed, Indexer<T> indexer) {
+			
+			if(removed.isEmpty())
+			{
+				return;
+			}
+			
+			Set<T> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+			gone.addAll(removed);
+			int kept = 0;
+			
+			for(int id = 0; id < all.size(); id++)
+			{
+				T member = all.get(id);
+				
+				if(gone.contains(member))
+				{
+					indexer.index(member, id, false);
+					continue;
+				}
+				//every id below this one is already cleared or taken by whoever moved there, so kept is free
+				if(kept != id)
+				{
+					indexer.index(member, id, false);
+					indexer.index(member, kept, true);
+					all.set(kept, member);
+				}
+				kept++;
+			}
+			all.subList(kept, all.size()).clear();
+		}
 		
+		//the ids of the given crew, found in one pass over the list and only if there are any to find
+		private static <T> Map<T, Integer> ids(List<T> all, List<T> wanted) {
+			
+			Map<T, Integer> ids = new IdentityHashMap<>();
+			
+			if(wanted.isEmpty())
+			{
+				return ids;
+			}
+			
+			Set<T> find = Collections.newSetFromMap(new IdentityHashMap<>());
+			find.addAll(wanted);
+			
+			for(int id = 0; id < all.size() && ids.size() < find.size(); id++)
+			{
+				if(find.contains(all.get(id)))
+				{
+					ids.put(all.get(id), id);
+				}
+			}
+			return ids;
+		}
+		
+		private static <K> void index(Map<K, BitSet> index, K key, int id, boolean set) {
+			
+			if(set)
+			{
+				index.computeIfAbsent(key, k -> new BitSet()).set(id);
+			}
+			else if(index.containsKey(key))
+			{
+				index.get(key).clear(id);
+			}
+		}
+		
+		private static <K, M extends Map<K, BitSet>> M copy(Map<K, BitSet> from, M to) {
+			
+			for(Map.Entry<K, BitSet> e : from.entrySet())
+			{
+				to.put(e.getKey(), (BitSet) e.getValue().clone());
+			}
+			return to;
+		}
+	}
+	
+	private static BitSet bits(Map<String, BitSet> index, String key) {
+		return bits(index, key, false);
+	}
+	
+	private static BitSet bits(Map<String, BitSet> index, String key, boolean create) {
+		
+		BitSet b = index.get(key);
+		
+		if(b == null)
+		{
+			if(! create)
+			{
+				return NONE;
+			}
+			b = new BitSet();
+			index.put(key, b);
+		}
+		return b;
+	}
+	
+	/**
+	 * Returns the members of the list whose ids are in both bitsets (or just the first if the second is null)
+	 * Each member appears once, in the order they were loaded
+	 */
+	private static <T> List<T> select(Metrics.Timer timer, List<T> all, BitSet a, BitSet b) {
+		
+		long t = Metrics.start();
+		BitSet ids = a;
+		
+		if(b != null)
+		{
+			ids = (BitSet) a.clone();
+			ids.and(b);
+		}
+		
+		List<T> found = new ArrayList<>(ids.cardinality());
+		
+		for(int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1))
+		{
+			found.add(all.get(i));
+		}
+		timer.stop(t);
+		return found;
 	}
 
 }
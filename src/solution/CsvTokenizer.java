@@ -0,0 +1,258 @@
+package solution;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The CsvTokenizer walks a UTF-8 byte buffer one record at a time, remembering where each
+ * field starts and ends rather than building a String[] for every line.
+ * Fields are split on commas with the same rules as String.split(","): there is no quoting,
+ * trailing empty fields are dropped and an empty line counts as a single empty field.
+ * Lines may end in \n, \r or \r\n, as with BufferedReader.readLine(), and a line that isn't valid UTF-8
+ * is rejected as a whole, as BufferedReader rejects it, even if the bad bytes are in a field that is never read
+ */
+public class CsvTokenizer {
+
+	private final ByteBuffer buf;
+	private final int limit;
+	private int pos;
+
+	//start and end offsets of the fields in the current record, reused for every record
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int count;
+
+	private byte[] scratch = new byte[64];
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+
+	/**
+	 * Creates a tokenizer over the remaining bytes of the buffer
+	 * @param buf the bytes to tokenize, from its position up to its limit
+	 */
+	public CsvTokenizer(ByteBuffer buf) {
+		this.buf = buf;
+		this.pos = buf.position();
+		this.limit = buf.limit();
+	}
+
+	/**
+	 * Moves on to the next record
+	 * @return true if there was another record, false at the end of the buffer
+	 * @throws CharacterCodingException if the record is not valid UTF-8
+	 */
+	public boolean nextRecord() throws CharacterCodingException {
+
+		if(pos >= limit)
+		{
+			return false;
+		}
+
+		count = 0;
+		int lineStart = pos;
+		int fieldStart = pos;
+		int lineEnd = limit;
+		boolean ascii = true;
+
+		while(pos < limit)
+		{
+			byte b = buf.get(pos);
+
+			if(b == ',')
+			{
+				addField(fieldStart, pos);
+				fieldStart = ++pos;
+			}
+			else if(b == '\n' || b == '\r')
+			{
+				lineEnd = pos++;
+
+				if(b == '\r' && pos < limit && buf.get(pos) == '\n')
+				{
+					pos++;
+				}
+				break;
+			}
+			else
+			{
+				ascii &= b >= 0;
+				pos++;
+			}
+		}
+		addField(fieldStart, lineEnd);
+
+		//only a line with a non-ASCII byte can be malformed, and no byte of a multi-byte character is a comma or line end
+		if(! ascii)
+		{
+			ByteBuffer line = buf.duplicate();
+			line.limit(lineEnd).position(lineStart);
+			decoder.reset().decode(line);
+		}
+
+		if(lineEnd == lineStart)
+		{
+			count = 1;//an empty line is one empty field
+		}
+		else
+		{
+			while(count > 0 && starts[count - 1] == ends[count - 1])//String.split drops trailing empty fields
+			{
+				count--;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of fields in the current record
+	 * @return the number of fields in the current record
+	 */
+	public int fieldCount() {
+		return count;
+	}
+
+	/**
+	 * Returns a field of the current record as a String
+	 * @param i the index of the field
+	 * @return the field's text
+	 * @throws CharacterCodingException if the field is not valid UTF-8
+	 */
+	public String field(int i) throws CharacterCodingException {
+
+		int start = start(i);
+		int len = ends[i] - start;
+
+		if(len > scratch.length)
+		{
+			scratch = new byte[Math.max(len, scratch.length * 2)];
+		}
+
+		boolean ascii = true;
+
+		for(int j = 0; j < len; j++)
+		{
+			byte b = buf.get(start + j);
+			scratch[j] = b;
+			ascii &= b >= 0;
+		}
+
+		if(ascii)
+		{
+			return new String(scratch, 0, len, StandardCharsets.ISO_8859_1);
+		}
+
+		ByteBuffer slice = buf.duplicate();
+		slice.limit(start + len).position(start);
+		CharBuffer chars = decoder.reset().decode(slice);
+		return chars.toString();
+	}
+
+	/**
+	 * Parses a field of the current record as an int, accepting exactly what Integer.parseInt accepts
+	 * @param i the index of the field
+	 * @return the field's value
+	 * @throws NumberFormatException if the field is not a valid int
+	 * @throws CharacterCodingException if the field is not valid UTF-8
+	 */
+	public int intField(int i) throws CharacterCodingException {
+
+		int start = start(i);
+		int end = ends[i];
+
+		if(start == end)
+		{
+			throw new NumberFormatException("For input string: \"\"");
+		}
+
+		boolean negative = false;
+		int j = start;
+		byte first = buf.get(j);
+
+		if(first == '-' || first == '+')
+		{
+			negative = first == '-';
+			j++;
+		}
+
+		long limitValue = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+		long value = 0;
+
+		if(j == end)
+		{
+			throw new NumberFormatException("For input string: \"" + field(i) + "\"");
+		}
+
+		for(; j < end; j++)
+		{
+			byte b = buf.get(j);
+
+			if(b < 0)
+			{
+				return Integer.parseInt(field(i));//non-ASCII digits are rare, let the JDK decide
+			}
+			if(b < '0' || b > '9' || (value = value * 10 + (b - '0')) > limitValue)
+			{
+				throw new NumberFormatException("For input string: \"" + field(i) + "\"");
+			}
+		}
+		return (int) (negative ? -value : value);
+	}
+
+	/**
+	 * Checks whether a field of the current record, upper-cased, is exactly the given ASCII text
+	 * Only ASCII fields can match; anything else returns false
+	 * @param i the index of the field
+	 * @param upper the upper case ASCII text to compare with
+	 * @return true if the field matches
+	 */
+	public boolean fieldEqualsUpperCase(int i, String upper) {
+
+		int start = start(i);
+		int len = ends[i] - start;
+
+		if(len != upper.length())
+		{
+			return false;
+		}
+
+		for(int j = 0; j < len; j++)
+		{
+			int b = buf.get(start + j);
+
+			if(b >= 'a' && b <= 'z')
+			{
+				b -= 'a' - 'A';
+			}
+			if(b != upper.charAt(j))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int start(int i) {
+
+		if(i < 0 || i >= count)
+		{
+			throw new ArrayIndexOutOfBoundsException(i);//the same failure a short String[] would give
+		}
+		return starts[i];
+	}
+
+	private void addField(int start, int end) {
+
+		if(count == starts.length)
+		{
+			starts = Arrays.copyOf(starts, count * 2);
+			ends = Arrays.copyOf(ends, count * 2);
+		}
+		starts[count] = start;
+		ends[count] = end;
+		count++;
+	}
+
+}
@@ -0,0 +1,246 @@
+package solution;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * A DataDelta is what changed between two loads of the same data: the records added, the records removed,
+ * and the records whose key is the same but whose details changed, both as they were and as they are now.
+ * Records are matched by a key such as a tail code; when several have the same key they are matched in order
+ * @param <T> the type of record
+ */
+public class DataDelta<T> {
+
+	private final List<T> added = new ArrayList<>();
+	private final List<T> removed = new ArrayList<>();
+	private final List<T> updatedBefore = new ArrayList<>();
+	private final List<T> updatedAfter = new ArrayList<>();
+
+	/**
+	 * Works out what changed between two lists of records
+	 * @param before the records as they were
+	 * @param after the records as they are now
+	 * @param key what identifies a record, e.g. its tail code
+	 * @param same whether two records with the same key have the same details
+	 * @param <T> the type of record
+	 * @return the changes, added records in the order they are in after and the rest in the order they were in before
+	 */
+	public static <T> DataDelta<T> diff(List<T> before, List<T> after, Function<T, String> key, BiPredicate<T, T> same) {
+
+		DataDelta<T> delta = new DataDelta<>();
+
+		//where each key is in before, in order, so the second record with a key matches the second
+		Map<String, ArrayDeque<Integer>> old = new HashMap<>();
+		boolean[] matched = new boolean[before.size()];
+
+		for(int i = 0; i < before.size(); i++)
+		{
+			old.computeIfAbsent(key.apply(before.get(i)), k -> new ArrayDeque<>()).add(i);
+		}
+
+		for(T a : after)
+		{
+			ArrayDeque<Integer> waiting = old.get(key.apply(a));
+			Integer i = waiting == null ? null : waiting.poll();
+
+			if(i == null)
+			{
+				delta.added.add(a);
+				continue;
+			}
+			matched[i] = true;
+			T b = before.get(i);
+
+			if(! same.test(b, a))
+			{
+				delta.updatedBefore.add(b);
+				delta.updatedAfter.add(a);
+			}
+		}
+
+		for(int i = 0; i < before.size(); i++)
+		{
+			if(! matched[i])
+			{
+				delta.removed.add(before.get(i));
+			}
+		}
+		return delta;
+	}
+
+	/**
+	 * Returns the records that are new
+	 * @return the records added
+	 */
+	public List<T> getAdded() {
+		return Collections.unmodifiableList(added);
+	}
+
+	/**
+	 * Returns the records that are gone
+	 * @return the records removed, as they were
+	 */
+	public List<T> getRemoved() {
+		return Collections.unmodifiableList(removed);
+	}
+
+	/**
+	 * Returns the changed records as they were, in the same order as getUpdatedAfter()
+	 * @return the records before they changed
+	 */
+	public List<T> getUpdatedBefore() {
+		return Collections.unmodifiableList(updatedBefore);
+	}
+
+	/**
+	 * Returns the changed records as they are now, in the same order as getUpdatedBefore()
+	 * @return the records after they changed
+	 */
+	public List<T> getUpdatedAfter() {
+		return Collections.unmodifiableList(updatedAfter);
+	}
+
+	/**
+	 * Returns the part of the delta about one kind of record, e.g. just the pilots in a delta of crew
+	 * @param type the kind of record
+	 * @param <S> the type of record
+	 * @return the changes to records of that kind
+	 */
+	public <S extends T> DataDelta<S> only(Class<S> type) {
+
+		DataDelta<S> part = new DataDelta<>();
+
+		for(T a : added)
+		{
+			if(type.isInstance(a))
+			{
+				part.added.add(type.cast(a));
+			}
+		}
+		for(T r : removed)
+		{
+			if(type.isInstance(r))
+			{
+				part.removed.add(type.cast(r));
+			}
+		}
+		for(int i = 0; i < updatedAfter.size(); i++)
+		{
+			if(type.isInstance(updatedBefore.get(i)) && type.isInstance(updatedAfter.get(i)))
+			{
+				part.updatedBefore.add(type.cast(updatedBefore.get(i)));
+				part.updatedAfter.add(type.cast(updatedAfter.get(i)));
+			}
+		}
+		return part;
+	}
+
+	/**
+	 * Returns the number of records added, removed or changed
+	 * @return the size of the change
+	 */
+	public int size() {
+		return added.size() + removed.size() + updatedAfter.size();
+	}
+
+	/**
+	 * Returns whether nothing changed
+	 * @return true if the delta is empty
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Takes an item out of the list it is in in an index, leaving the list there even if it is empty
+	 */
+	static <K, T> void unindex(Map<K, List<T>> index, K key, T item) {
+
+		List<T> list = index.get(key);
+
+		if(list == null)
+		{
+			return;
+		}
+
+		for(int i = 0; i < list.size(); i++)
+		{
+			if(list.get(i) == item)
+			{
+				list.remove(i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Puts an item in the place of another in an index, in the same place in its list if it has the same key
+	 * and at the end of its new key's list if not
+	 */
+	static <K, T> void reindex(Map<K, List<T>> index, K oldKey, T oldItem, K newKey, T newItem) {
+
+		List<T> list = index.get(oldKey);
+
+		if(list != null && (oldKey == null ? newKey == null : oldKey.equals(newKey)))
+		{
+			for(int i = 0; i < list.size(); i++)
+			{
+				if(list.get(i) == oldItem)
+				{
+					list.set(i, newItem);
+					return;
+				}
+			}
+		}
+
+		unindex(index, oldKey, oldItem);
+		index.computeIfAbsent(newKey, k -> new ArrayList<>()).add(newItem);
+	}
+
+	/**
+	 * Applies a delta to a list in one pass: changed records take the place of the ones they replace,
+	 * removed ones are dropped and added ones go on the end, so everything else stays in the same order
+	 */
+	static <T> void applyTo(List<T> list, DataDelta<? extends T> delta) {
+
+		Map<T, T> replace = new IdentityHashMap<>();
+
+		for(int i = 0; i < delta.updatedBefore.size(); i++)
+		{
+			replace.put(delta.updatedBefore.get(i), delta.updatedAfter.get(i));
+		}
+		for(T r : delta.removed)
+		{
+			replace.put(r, null);
+		}
+
+		if(! replace.isEmpty())
+		{
+			int kept = 0;
+
+			for(int i = 0; i < list.size(); i++)
+			{
+				T item = list.get(i);
+
+				if(replace.containsKey(item))
+				{
+					item = replace.get(item);
+				}
+				if(item != null)
+				{
+					list.set(kept++, item);
+				}
+			}
+			list.subList(kept, list.size()).clear();
+		}
+		list.addAll(delta.added);
+	}
+
+}
@@ -0,0 +1,318 @@
+package solution;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import baseclasses.DataLoadingException;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+
+/**
+ * The DataLoader loads several independent sources at once, each on its own thread, so loading takes about as long
+ * as the slowest source rather than all of them added up
+ * Every load is run to the end even if another fails, so all the problems are reported together, and how long
+ * each source took is kept for afterwards
+ */
+public class DataLoader {
+
+	/**
+	 * One source to load, usually one of the DAOs' load methods
+	 */
+	public interface Source {
+
+		/**
+		 * Loads the source
+		 * @throws DataLoadingException if anything goes wrong
+		 */
+		void load() throws DataLoadingException;
+	}
+
+	private final Map<String, Source> sources = new LinkedHashMap<>();
+
+	//about the last run
+	private final Map<String, Duration> timings = new LinkedHashMap<>();
+	private final Map<String, Throwable> failures = new LinkedHashMap<>();
+	private Duration elapsed = Duration.ZERO;
+
+	private final List<Future<?>> running = new ArrayList<>();
+	private boolean cancelled;
+
+	/**
+	 * Adds a source to load
+	 * @param name what to call the source in timings and failures, e.g. "aircraft"
+	 * @param source how to load it
+	 */
+	public void add(String name, Source source) {
+
+		if(sources.containsKey(name))
+		{
+			throw new IllegalArgumentException("there is already a source called " + name);
+		}
+		sources.put(name, source);
+	}
+
+	/**
+	 * Adds an aircraft file to load, called "aircraft"
+	 * @param dao the DAO to load it into
+	 * @param p the CSV file
+	 */
+	public void addAircraft(IAircraftDAO dao, Path p) {
+		add("aircraft", () -> dao.loadAircraftData(p));
+	}
+
+	/**
+	 * Adds a crew file to load, called "crew"
+	 * @param dao the DAO to load it into
+	 * @param p the JSON file
+	 */
+	public void addCrew(ICrewDAO dao, Path p) {
+		add("crew", () -> dao.loadCrewData(p));
+	}
+
+	/**
+	 * Adds a route file to load, called "routes"
+	 * @param dao the DAO to load it into
+	 * @param p the XML file
+	 */
+	public void addRoutes(IRouteDAO dao, Path p) {
+		add("routes", () -> dao.loadRouteData(p));
+	}
+
+	/**
+	 * Adds a passenger numbers database to load, called "passengers"
+	 * @param dao the DAO to load it into
+	 * @param p the SQLite database
+	 */
+	public void addPassengerNumbers(IPassengerNumbersDAO dao, Path p) {
+		add("passengers", () -> dao.loadPassengerNumbersData(p));
+	}
+
+	/**
+	 * Adds the part of a passenger numbers database between two dates to load, called "passengers"
+	 * @param dao the DAO to load it into
+	 * @param p the SQLite database
+	 * @param startDate the first date needed
+	 * @param endDate the last date needed
+	 */
+	public void addPassengerNumbers(PassengerNumbersDAO dao, Path p, LocalDate startDate, LocalDate endDate) {
+		add("passengers", () -> dao.loadPassengerNumbersData(p, startDate, endDate));
+	}
+
+	/**
+	 * Loads every source at once and waits for them all to finish
+	 * If any fail, the DataLoadingException's cause is the first source's underlying exception, and the others'
+	 * DataLoadingExceptions are suppressed in it. Each DAO is left as its own load left it, so one that failed
+	 * may be partly loaded. Nothing is still loading when this returns or throws
+	 * @throws DataLoadingException if any source couldn't be loaded, or the load was cancelled
+	 */
+	public void loadAll() throws DataLoadingException {
+
+		timings.clear();
+		failures.clear();
+
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, sources.size()), r -> {
+			Thread t = new Thread(r, "DataLoader");
+			t.setDaemon(true);
+			return t;
+		});
+
+		try {
+			Map<String, Future<?>> loads = new LinkedHashMap<>();
+
+			synchronized(this)
+			{
+				cancelled = false;
+				running.clear();
+
+				for(Map.Entry<String, Source> e : sources.entrySet())
+				{
+					Future<?> f = pool.submit(() -> timed(e.getKey(), e.getValue()));
+					loads.put(e.getKey(), f);
+					running.add(f);
+				}
+			}
+
+			for(Map.Entry<String, Future<?>> e : loads.entrySet())
+			{
+				try {
+					e.getValue().get();
+				}
+				catch (ExecutionException ee) {
+					failures.put(e.getKey(), ee.getCause() instanceof DataLoadingException && ee.getCause().getCause() != null
+							? ee.getCause().getCause() : ee.getCause());
+				}
+				catch (CancellationException ce) {
+					failures.put(e.getKey(), ce);
+				}
+			}
+		}
+		catch (InterruptedException ie) {
+			cancel();
+			Thread.currentThread().interrupt();
+			throw new DataLoadingException(ie);
+		}
+		finally
+		{
+			//a cancelled load is only interrupted, so wait for it to stop before saying it failed
+			pool.shutdownNow();
+			awaitStopped(pool);
+			elapsed = Duration.ofNanos(System.nanoTime() - start);
+		}
+
+		if(! failures.isEmpty())
+		{
+			DataLoadingException dle = null;
+
+			for(Throwable cause : failures.values())
+			{
+				if(dle == null)
+				{
+					dle = new DataLoadingException(cause);
+				}
+				else
+				{
+					dle.addSuppressed(new DataLoadingException(cause));
+				}
+			}
+			throw dle;
+		}
+	}
+
+	//waits for every load to finish, even if this thread is interrupted, which is then passed on
+	private static void awaitStopped(ExecutorService pool) {
+
+		boolean interrupted = false;
+
+		while(true)
+		{
+			try {
+				if(pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS))
+				{
+					break;
+				}
+			}
+			catch (InterruptedException ie) {
+				interrupted = true;
+			}
+		}
+
+		if(interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Void timed(String name, Source source) throws DataLoadingException {
+
+		long t = System.nanoTime();
+
+		try {
+			source.load();
+		}
+		finally
+		{
+			synchronized(timings)
+			{
+				timings.put(name, Duration.ofNanos(System.nanoTime() - t));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Cancels the loads still running by interrupting them; loadAll() waits for them to stop and then throws
+	 * The aircraft load checks for the interrupt between rows and adds nothing. The crew and route loads stop with an
+	 * error, adding nothing, if they are still reading their file, but one that has read it all may still finish.
+	 * A passenger numbers query runs on until it is done
+	 * Can be called from any thread
+	 */
+	public synchronized void cancel() {
+
+		cancelled = true;
+
+		for(Future<?> f : running)
+		{
+			f.cancel(true);
+		}
+	}
+
+	/**
+	 * Returns whether the last load was cancelled
+	 * @return true if cancel() was called during the last loadAll()
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Returns how long each source took to load in the last run, in the order they were added
+	 * A source that was cancelled before it started isn't included
+	 * @return the time each source took
+	 */
+	public Map<String, Duration> getTimings() {
+
+		synchronized(timings)
+		{
+			Map<String, Duration> ordered = new LinkedHashMap<>();
+
+			for(String name : sources.keySet())
+			{
+				if(timings.containsKey(name))
+				{
+					ordered.put(name, timings.get(name));
+				}
+			}
+			return Collections.unmodifiableMap(ordered);
+		}
+	}
+
+	/**
+	 * Returns the underlying exception for each source that failed in the last run
+	 * @return the failures, by source
+	 */
+	public Map<String, Throwable> getFailures() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+	}
+
+	/**
+	 * Returns how long the last run took altogether, which is about as long as the slowest source
+	 * @return the time to load everything
+	 */
+	public Duration getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * Returns a line per source with how long it took, and a line for the whole load
+	 * @return the timings, for printing
+	 */
+	@Override
+	public String toString() {
+
+		StringBuilder sb = new StringBuilder();
+
+		for(Map.Entry<String, Duration> e : getTimings().entrySet())
+		{
+			sb.append(String.format("%-12s %8d ms%s%n", e.getKey(), e.getValue().toMillis(),
+					failures.containsKey(e.getKey()) ? "  failed: " + failures.get(e.getKey()) : ""));
+		}
+		sb.append(String.format("%-12s %8d ms%n", "all", elapsed.toMillis()));
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,379 @@
+package solution;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.DataLoadingException;
+import baseclasses.Pilot;
+import baseclasses.Route;
+
+/**
+ * The DataReloader watches the aircraft, crew and route files the DAOs were loaded from, and when one changes
+ * it loads it again and applies only what changed to the DAO, rather than resetting and loading it from scratch
+ * Aircraft are matched by tail code, crew by name and whether they are a pilot, and routes by flight number and day
+ * Listeners are told what changed, both as a DataDelta and as a ScheduleChange an IncrementalScheduler can repair with
+ * The DAOs shouldn't be loaded or reset by anything else while they are being watched
+ */
+public class DataReloader implements Closeable {
+
+	//how long to wait after a change for any more, so a file being written is read once it's finished
+	public static final long SETTLE_MILLIS = 100;
+
+	//what reloading records in Metrics
+	private static final Metrics.Timer RELOAD = Metrics.timer("reload");
+	private static final Metrics.Counter RELOAD_CHANGES = Metrics.counter("reload.changes");
+	private static final Metrics.Counter RELOAD_ERRORS = Metrics.counter("reload.errors");
+
+	/**
+	 * Told about every reload that changed something
+	 */
+	public interface Listener {
+
+		/**
+		 * Called on the thread that reloaded, after the change has been applied to the DAO
+		 * @param file the file that was reloaded
+		 * @param delta what changed in the file
+		 * @param change the same thing as a change for IncrementalScheduler.repair()
+		 */
+		void reloaded(Path file, DataDelta<?> delta, ScheduleChange change);
+	}
+
+	private final AircraftDAO aircraftDAO;
+	private final Path aircraftFile;
+	private final CrewDAO crewDAO;
+	private final Path crewFile;
+	private final RouteDAO routeDAO;
+	private final Path routeFile;
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	private WatchService watcher;
+	private Thread thread;
+
+	/**
+	 * Creates a reloader for the given DAOs and the files they were loaded from
+	 * Any file can be null, and then it isn't watched
+	 * @param aircraftDAO the DAO the aircraft file was loaded into
+	 * @param aircraftFile the aircraft CSV file
+	 * @param crewDAO the DAO the crew file was loaded into
+	 * @param crewFile the crew JSON file
+	 * @param routeDAO the DAO the route file was loaded into
+	 * @param routeFile the route XML file
+	 */
+	public DataReloader(AircraftDAO aircraftDAO, Path aircraftFile, CrewDAO crewDAO, Path crewFile,
+			RouteDAO routeDAO, Path routeFile) {
+
+		this.aircraftDAO = aircraftDAO;
+		this.aircraftFile = absolute(aircraftFile);
+		this.crewDAO = crewDAO;
+		this.crewFile = absolute(crewFile);
+		this.routeDAO = routeDAO;
+		this.routeFile = absolute(routeFile);
+	}
+
+	private static Path absolute(Path p) {
+		return p == null ? null : p.toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Adds a listener to be told about every reload that changes something
+	 * @param l the listener
+	 */
+	public void addListener(Listener l) {
+		listeners.add(l);
+	}
+
+	/**
+	 * Stops telling a listener about reloads
+	 * @param l the listener
+	 */
+	public void removeListener(Listener l) {
+		listeners.remove(l);
+	}
+
+	/**
+	 * Starts watching the files on a daemon thread, reloading each one when it changes
+	 * A file that can't be loaded, for example because it is only half written, is reported and the DAO is left as it was
+	 * @throws IOException if the directories can't be watched
+	 */
+	public synchronized void start() throws IOException {
+
+		if(thread != null)
+		{
+			return;
+		}
+
+		watcher = FileSystems.getDefault().newWatchService();
+		Set<Path> dirs = new LinkedHashSet<>();
+
+		for(Path p : new Path[] {aircraftFile, crewFile, routeFile})
+		{
+			if(p != null)
+			{
+				dirs.add(p.getParent());
+			}
+		}
+		for(Path dir : dirs)
+		{
+			//files are often saved by writing a new one and moving it over the old one, so creation counts too
+			dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		}
+
+		thread = new Thread(this::watch, "DataReloader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops watching the files
+	 * @throws IOException if the watch service can't be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+
+		if(thread == null)
+		{
+			return;
+		}
+
+		thread.interrupt();
+		watcher.close();
+		thread = null;
+	}
+
+	private void watch() {
+
+		try {
+			while(! Thread.currentThread().isInterrupted())
+			{
+				//gather every change until the files have been quiet for a moment, then reload each file once
+				Set<Path> changed = new LinkedHashSet<>();
+				WatchKey key = watcher.take();
+
+				while(key != null)
+				{
+					Path dir = (Path) key.watchable();
+
+					for(WatchEvent<?> e : key.pollEvents())
+					{
+						if(e.context() instanceof Path)
+						{
+							changed.add(dir.resolve((Path) e.context()));
+						}
+					}
+					key.reset();
+					key = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+				}
+
+				for(Path p : changed)
+				{
+					reload(p);
+				}
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException e) {
+			//closed
+		}
+	}
+
+	private void reload(Path p) {
+
+		try {
+			if(p.equals(aircraftFile))
+			{
+				reloadAircraft();
+			}
+			else if(p.equals(crewFile))
+			{
+				reloadCrew();
+			}
+			else if(p.equals(routeFile))
+			{
+				reloadRoutes();
+			}
+		}
+		catch (DataLoadingException e) {
+			RELOAD_ERRORS.increment();
+			System.err.println("Error reloading " + p + ":" + e.getCause());
+		}
+	}
+
+	/**
+	 * Loads the aircraft file again and applies what changed to the AircraftDAO
+	 * In the ScheduleChange, aircraft that are removed are taken out of service, aircraft that are added are put in,
+	 * and aircraft that are changed are replaced
+	 * @return what changed
+	 * @throws DataLoadingException if the file can't be loaded, in which case the DAO is left as it was
+	 */
+	public synchronized DataDelta<Aircraft> reloadAircraft() throws DataLoadingException {
+
+		long t = Metrics.start();
+
+		try {
+			AircraftDAO fresh = new AircraftDAO();
+			fresh.loadAircraftData(aircraftFile);
+
+			DataDelta<Aircraft> delta = DataDelta.diff(aircraftDAO.getAllAircraft(), fresh.getAllAircraft(),
+					Aircraft::getTailCode, DataReloader::same);
+
+			if(! delta.isEmpty())
+			{
+				aircraftDAO.apply(delta);
+
+				ScheduleChange change = new ScheduleChange();
+				delta.getRemoved().forEach(change::removeAircraft);
+
+				for(int i = 0; i < delta.getUpdatedBefore().size(); i++)
+				{
+					change.replaceAircraft(delta.getUpdatedBefore().get(i), delta.getUpdatedAfter().get(i));
+				}
+				delta.getAdded().forEach(change::addAircraft);
+				changed(aircraftFile, delta, change);
+			}
+			return delta;
+		}
+		finally
+		{
+			RELOAD.stop(t);
+		}
+	}
+
+	/**
+	 * Loads the crew file again and applies what changed to the CrewDAO
+	 * In the ScheduleChange, crew who are removed are taken out of service, crew who are added are put in,
+	 * and crew who are changed are replaced
+	 * @return what changed
+	 * @throws DataLoadingException if the file can't be loaded, in which case the DAO is left as it was
+	 */
+	public synchronized DataDelta<Crew> reloadCrew() throws DataLoadingException {
+
+		long t = Metrics.start();
+
+		try {
+			CrewDAO fresh = new CrewDAO();
+			fresh.loadCrewData(crewFile);
+
+			DataDelta<Crew> delta = DataDelta.diff(crewDAO.getAllCrew(), fresh.getAllCrew(),
+					DataReloader::key, DataReloader::same);
+
+			if(! delta.isEmpty())
+			{
+				crewDAO.apply(delta);
+
+				ScheduleChange change = new ScheduleChange();
+				delta.getRemoved().forEach(change::removeCrew);
+
+				for(int i = 0; i < delta.getUpdatedBefore().size(); i++)
+				{
+					change.replaceCrew(delta.getUpdatedBefore().get(i), delta.getUpdatedAfter().get(i));
+				}
+				delta.getAdded().forEach(change::addCrew);
+				changed(crewFile, delta, change);
+			}
+			return delta;
+		}
+		finally
+		{
+			RELOAD.stop(t);
+		}
+	}
+
+	/**
+	 * Loads the route file again and applies what changed to the RouteDAO
+	 * Routes that are removed are cancelled in the ScheduleChange, and routes that are added or changed are added,
+	 * taking the place of the route they change
+	 * @return what changed
+	 * @throws DataLoadingException if the file can't be loaded, in which case the DAO is left as it was
+	 */
+	public synchronized DataDelta<Route> reloadRoutes() throws DataLoadingException {
+
+		long t = Metrics.start();
+
+		try {
+			RouteDAO fresh = new RouteDAO();
+			fresh.loadRouteData(routeFile);
+
+			DataDelta<Route> delta = DataDelta.diff(routeDAO.getAllRoutes(), fresh.getAllRoutes(),
+					r -> r.getFlightNumber() + "/" + r.getDayOfWeek(), DataReloader::same);
+
+			if(! delta.isEmpty())
+			{
+				routeDAO.apply(delta);
+
+				ScheduleChange change = new ScheduleChange();
+				delta.getRemoved().forEach(change::cancelRoute);
+				delta.getUpdatedAfter().forEach(change::addRoute);
+				delta.getAdded().forEach(change::addRoute);
+				changed(routeFile, delta, change);
+			}
+			return delta;
+		}
+		finally
+		{
+			RELOAD.stop(t);
+		}
+	}
+
+	private void changed(Path file, DataDelta<?> delta, ScheduleChange change) {
+
+		RELOAD_CHANGES.add(delta.size());
+
+		for(Listener l : listeners)
+		{
+			l.reloaded(file, delta, change);
+		}
+	}
+
+	//pilots and cabin crew are told apart, so someone moving from one to the other is removed and added
+	private static String key(Crew c) {
+		return (c instanceof Pilot ? "P" : "C") + c.getForename() + "\u0000" + c.getSurname();
+	}
+
+	private static boolean same(Aircraft a, Aircraft b) {
+		return Objects.equals(a.getTailCode(), b.getTailCode())
+				&& Objects.equals(a.getModel(), b.getModel())
+				&& Objects.equals(a.getTypeCode(), b.getTypeCode())
+				&& a.getManufacturer() == b.getManufacturer()
+				&& Objects.equals(a.getStartingPosition(), b.getStartingPosition())
+				&& a.getSeats() == b.getSeats()
+				&& a.getCabinCrewRequired() == b.getCabinCrewRequired();
+	}
+
+	private static boolean same(Crew a, Crew b) {
+		return Objects.equals(a.getForename(), b.getForename())
+				&& Objects.equals(a.getSurname(), b.getSurname())
+				&& Objects.equals(a.getHomeBase(), b.getHomeBase())
+				&& Objects.equals(a.getTypeRatings(), b.getTypeRatings())
+				&& (! (a instanceof Pilot) || ((Pilot) a).getRank() == ((Pilot) b).getRank())
+				&& (a instanceof CabinCrew) == (b instanceof CabinCrew);
+	}
+
+	private static boolean same(Route a, Route b) {
+		return a.getFlightNumber() == b.getFlightNumber()
+				&& Objects.equals(a.getDayOfWeek(), b.getDayOfWeek())
+				&& Objects.equals(a.getDepartureAirport(), b.getDepartureAirport())
+				&& Objects.equals(a.getDepartureAirportCode(), b.getDepartureAirportCode())
+				&& Objects.equals(a.getArrivalAirport(), b.getArrivalAirport())
+				&& Objects.equals(a.getArrivalAirportCode(), b.getArrivalAirportCode())
+				&& Objects.equals(a.getDepartureTime(), b.getDepartureTime())
+				&& Objects.equals(a.getArrivalTime(), b.getArrivalTime())
+				&& Objects.equals(a.getDuration(), b.getDuration());
+	}
+
+}
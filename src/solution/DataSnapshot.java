@@ -0,0 +1,680 @@
+package solution;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.DataLoadingException;
+import baseclasses.Pilot;
+import baseclasses.Route;
+
+/**
+ * A DataSnapshot saves everything loaded into the four DAOs to one binary file, so a later run can restore it
+ * in milliseconds instead of parsing the CSV, JSON, XML and database again.
+ * Every string is stored once and referred to by number, each field is stored as a column of primitives,
+ * and the file ends with a CRC32 of the rest. The snapshot also records the size and modification time of
+ * the files the data came from, and is only restored while they are unchanged
+ */
+public class DataSnapshot {
+
+	//"SNAP", and the layout version, which must change whenever the layout does
+	private static final int MAGIC = 0x534E4150;
+	private static final int VERSION = 1;
+
+	//a snapshot is mapped in one go, so it can't be bigger than one mapping
+	private static final long MAX_SIZE = Integer.MAX_VALUE;
+
+	private static final Metrics.Timer SAVE = Metrics.timer("snapshot.save");
+	private static final Metrics.Timer RESTORE = Metrics.timer("snapshot.restore");
+	private static final Metrics.Counter STALE = Metrics.counter("snapshot.stale");
+
+	private DataSnapshot() {
+	}
+
+	/**
+	 * Fills the DAOs from the snapshot if it is there and the data files haven't changed since it was saved,
+	 * otherwise loads the data files as usual and saves a new snapshot for next time
+	 * A snapshot that can't be saved is reported but isn't an error, as the DAOs have been loaded anyway
+	 * @param snapshot where the snapshot is kept
+	 * @param aircraft the aircraft DAO to fill
+	 * @param aircraftFile the aircraft CSV
+	 * @param crew the crew DAO to fill
+	 * @param crewFile the crew JSON
+	 * @param routes the route DAO to fill
+	 * @param routeFile the routes XML
+	 * @param passengers the passenger numbers DAO to fill
+	 * @param passengerFile the passenger numbers database
+	 * @throws DataLoadingException if there is no usable snapshot and a data file can't be loaded
+	 */
+	public static void load(Path snapshot, AircraftDAO aircraft, Path aircraftFile, CrewDAO crew, Path crewFile,
+			RouteDAO routes, Path routeFile, PassengerNumbersDAO passengers, Path passengerFile) throws DataLoadingException {
+
+		Path[] sources = {aircraftFile, crewFile, routeFile, passengerFile};
+
+		if(restore(snapshot, aircraft, crew, routes, passengers, sources))
+		{
+			return;
+		}
+
+		//taken before the files are read, so one that changes while it is being read leaves the snapshot stale
+		List<Fingerprint> fingerprints = null;
+
+		try {
+			fingerprints = fingerprints(sources);
+		} catch (IOException e) {
+			//a file that can't be read is reported by loading it below
+		}
+
+		aircraft.loadAircraftData(aircraftFile);
+		crew.loadCrewData(crewFile);
+		routes.loadRouteData(routeFile);
+		passengers.loadPassengerNumbersData(passengerFile);
+
+		if(fingerprints == null)
+		{
+			return;
+		}
+
+		try {
+			save(snapshot, aircraft, crew, routes, passengers, fingerprints);
+		} catch (IOException e) {
+			System.err.println("Error saving data snapshot:" + e);
+		}
+	}
+
+	/**
+	 * Saves everything currently loaded in the DAOs, replacing the snapshot only once the new one is complete
+	 * @param snapshot where to save it
+	 * @param aircraft the aircraft DAO
+	 * @param crew the crew DAO
+	 * @param routes the route DAO
+	 * @param passengers the passenger numbers DAO
+	 * @param sources the files the DAOs were loaded from, which must be unchanged for the snapshot to be restored.
+	 * Their sizes and modification times are taken now, so they should not have changed since they were loaded
+	 * @throws IOException if the snapshot can't be written
+	 */
+	public static void save(Path snapshot, AircraftDAO aircraft, CrewDAO crew, RouteDAO routes,
+			PassengerNumbersDAO passengers, Path... sources) throws IOException {
+		save(snapshot, aircraft, crew, routes, passengers, fingerprints(sources));
+	}
+
+	private static void save(Path snapshot, AircraftDAO aircraft, CrewDAO crew, RouteDAO routes,
+			PassengerNumbersDAO passengers, List<Fingerprint> sources) throws IOException {
+
+		long t = Metrics.start();
+		Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+
+		try (Writer out = new Writer(FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(sources.size());
+
+			for(Fingerprint f : sources)
+			{
+				out.putString(f.key);
+				out.putLong(f.size);
+				out.putLong(f.modified);
+			}
+
+			//every string is numbered first, so the columns can refer to them
+			Strings strings = new Strings();
+			List<Aircraft> fleet = aircraft.getAllAircraft();
+			List<Pilot> pilots = crew.getAllPilots();
+			List<CabinCrew> cabinCrew = crew.getAllCabinCrew();
+			List<Route> routeList = routes.getAllRoutes();
+			LongIntHashMap forecasts = passengers.entries();
+
+			int[][] aircraftColumns = new int[4][fleet.size()];
+
+			for(int i = 0; i < fleet.size(); i++)
+			{
+				Aircraft a = fleet.get(i);
+				aircraftColumns[0][i] = strings.id(a.getTailCode());
+				aircraftColumns[1][i] = strings.id(a.getModel());
+				aircraftColumns[2][i] = strings.id(a.getTypeCode());
+				aircraftColumns[3][i] = strings.id(a.getStartingPosition());
+			}
+
+			int[][] pilotColumns = crewColumns(pilots, strings);
+			int[][] cabinColumns = crewColumns(cabinCrew, strings);
+			int[][] routeColumns = new int[6][routeList.size()];
+
+			for(int i = 0; i < routeList.size(); i++)
+			{
+				Route r = routeList.get(i);
+				routeColumns[0][i] = strings.id(r.getDayOfWeek());
+				routeColumns[1][i] = strings.id(r.getDepartureAirport());
+				routeColumns[2][i] = strings.id(r.getDepartureAirportCode());
+				routeColumns[3][i] = strings.id(r.getArrivalAirport());
+				routeColumns[4][i] = strings.id(r.getArrivalAirportCode());
+				routeColumns[5][i] = r.getFlightNumber();
+			}
+
+			out.putInt(strings.list.size());
+
+			for(String s : strings.list)
+			{
+				out.putString(s);
+			}
+
+			//aircraft
+			out.putInt(fleet.size());
+
+			for(int[] column : aircraftColumns)
+			{
+				out.putInts(column);
+			}
+
+			for(Aircraft a : fleet)
+			{
+				out.putByte(a.getManufacturer() == null ? -1 : a.getManufacturer().ordinal());
+			}
+
+			for(Aircraft a : fleet)
+			{
+				out.putInt(a.getSeats());
+			}
+
+			for(Aircraft a : fleet)
+			{
+				out.putInt(a.getCabinCrewRequired());
+			}
+
+			//pilots, then cabin crew
+			out.putInt(pilots.size());
+			putCrew(out, pilotColumns);
+
+			for(Pilot p : pilots)
+			{
+				out.putByte(p.getRank() == null ? -1 : p.getRank().ordinal());
+			}
+
+			out.putInt(cabinCrew.size());
+			putCrew(out, cabinColumns);
+
+			//routes
+			out.putInt(routeList.size());
+
+			for(int[] column : routeColumns)
+			{
+				out.putInts(column);
+			}
+
+			for(Route r : routeList)
+			{
+				out.putLong(r.getDepartureTime() == null ? -1 : r.getDepartureTime().toNanoOfDay());
+			}
+
+			for(Route r : routeList)
+			{
+				out.putLong(r.getArrivalTime() == null ? -1 : r.getArrivalTime().toNanoOfDay());
+			}
+
+			for(Route r : routeList)
+			{
+				out.putLong(r.getDuration() == null ? Long.MIN_VALUE : r.getDuration().getSeconds());
+			}
+
+			for(Route r : routeList)
+			{
+				out.putInt(r.getDuration() == null ? 0 : r.getDuration().getNano());
+			}
+
+			//passenger numbers, as their cache keys and values
+			out.putInt(forecasts.size());
+			forecasts.forEach((key, value) -> out.putLong(key));
+			forecasts.forEach((key, value) -> out.putInt(value));
+
+			out.finish();
+			//on disk before it replaces the old snapshot, so a crash can't leave a renamed but unwritten file
+			out.force();
+		}
+		catch (IOException | UncheckedIOException e) {
+			Files.deleteIfExists(temp);
+			throw e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : (IOException) e;
+		}
+
+		Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		SAVE.stop(t);
+	}
+
+	/**
+	 * Adds everything in the snapshot to the DAOs, as if the files it was saved from had been loaded into them
+	 * Nothing is added unless the snapshot is whole, of this version, and was saved from the same, unchanged, files
+	 * @param snapshot the snapshot
+	 * @param aircraft the aircraft DAO to fill
+	 * @param crew the crew DAO to fill
+	 * @param routes the route DAO to fill
+	 * @param passengers the passenger numbers DAO to fill
+	 * @param sources the files the DAOs would otherwise be loaded from, in the same order they were saved with
+	 * @return true if the DAOs were filled, false if the files need loading instead
+	 */
+	public static boolean restore(Path snapshot, AircraftDAO aircraft, CrewDAO crew, RouteDAO routes,
+			PassengerNumbersDAO passengers, Path... sources) {
+
+		long t = Metrics.start();
+
+		try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+
+			long size = channel.size();
+
+			if(size < 20 || size > MAX_SIZE)
+			{
+				STALE.increment();
+				return false;
+			}
+
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+
+			ByteBuffer body = map.duplicate();
+			body.limit((int) size - 8);
+			CRC32 crc = new CRC32();
+			crc.update(body);
+
+			if(map.getInt(0) != MAGIC || map.getInt(4) != VERSION || map.getLong((int) size - 8) != crc.getValue())
+			{
+				STALE.increment();
+				return false;
+			}
+
+			ByteBuffer in = map.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			in.limit((int) size - 8).position(8);
+
+			if(! fresh(in, sources))
+			{
+				STALE.increment();
+				return false;
+			}
+
+			//everything is read before anything is added, so a bad snapshot leaves the DAOs as they were
+			String[] strings = new String[in.getInt()];
+
+			for(int i = 0; i < strings.length; i++)
+			{
+				strings[i] = getString(in);
+			}
+
+			List<Aircraft> newAircraft = readAircraft(in, strings);
+			List<Pilot> newPilots = readPilots(in, strings);
+			List<CabinCrew> newCabin = readCrew(in, strings, in.getInt(), CabinCrew::new);
+			List<Route> newRoutes = readRoutes(in, strings);
+
+			long[] keys = new long[in.getInt()];
+			int[] values = new int[keys.length];
+			in.asLongBuffer().get(keys);
+			in.position(in.position() + 8 * keys.length);
+			in.asIntBuffer().get(values);
+
+			LongIntHashMap forecasts = new LongIntHashMap(keys.length);
+
+			for(int i = 0; i < keys.length; i++)
+			{
+				forecasts.put(keys[i], values[i]);
+			}
+
+			aircraft.addAll(newAircraft);
+			crew.addAll(newPilots, newCabin);
+			routes.addAll(newRoutes);
+			passengers.putAll(forecasts);
+
+			RESTORE.stop(t);
+			return true;
+		}
+		catch (IOException | RuntimeException e) {
+			//missing or unreadable, the files will be loaded instead
+			STALE.increment();
+			return false;
+		}
+	}
+
+	//whether the sources recorded in the snapshot are the ones given, with the same sizes and modification times
+	private static boolean fresh(ByteBuffer in, Path[] sources) throws IOException {
+
+		if(in.getInt() != sources.length)
+		{
+			return false;
+		}
+
+		for(Path p : sources)
+		{
+			String key = getString(in);
+			long size = in.getLong();
+			long modified = in.getLong();
+
+			if(! key.equals(key(p)) || ! Files.exists(p) || size != Files.size(p) || modified != Files.getLastModifiedTime(p).toMillis())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String key(Path p) {
+		return p.toAbsolutePath().normalize().toString();
+	}
+
+	private static List<Fingerprint> fingerprints(Path[] sources) throws IOException {
+
+		List<Fingerprint> fingerprints = new ArrayList<>();
+
+		for(Path p : sources)
+		{
+			fingerprints.add(new Fingerprint(key(p), Files.size(p), Files.getLastModifiedTime(p).toMillis()));
+		}
+		return fingerprints;
+	}
+
+	//what a data file is recognised by when a snapshot is restored
+	private static class Fingerprint {
+
+		final String key;
+		final long size;
+		final long modified;
+
+		Fingerprint(String key, long size, long modified) {
+			this.key = key;
+			this.size = size;
+			this.modified = modified;
+		}
+	}
+
+	private static List<Aircraft> readAircraft(ByteBuffer in, String[] strings) {
+
+		int n = in.getInt();
+		int[] tail = getInts(in, n), model = getInts(in, n), type = getInts(in, n), position = getInts(in, n);
+		byte[] manufacturer = new byte[n];
+		in.get(manufacturer);
+		int[] seats = getInts(in, n), cabinCrew = getInts(in, n);
+
+		Aircraft.Manufacturer[] manufacturers = Aircraft.Manufacturer.values();
+		List<Aircraft> fleet = new ArrayList<>(n);
+
+		for(int i = 0; i < n; i++)
+		{
+			Aircraft a = new Aircraft();
+			a.setTailCode(string(strings, tail[i]));
+			a.setModel(string(strings, model[i]));
+			a.setTypeCode(string(strings, type[i]));
+			a.setManufacturer(manufacturer[i] < 0 ? null : manufacturers[manufacturer[i]]);
+			a.setStartingPosition(string(strings, position[i]));
+			a.setSeats(seats[i]);
+			a.setCabinCrewRequired(cabinCrew[i]);
+			fleet.add(a);
+		}
+		return fleet;
+	}
+
+	private static List<Pilot> readPilots(ByteBuffer in, String[] strings) {
+
+		List<Pilot> pilots = readCrew(in, strings, in.getInt(), Pilot::new);
+		Pilot.Rank[] ranks = Pilot.Rank.values();
+
+		for(Pilot p : pilots)
+		{
+			byte rank = in.get();
+			p.setRank(rank < 0 ? null : ranks[rank]);
+		}
+		return pilots;
+	}
+
+	private static <T extends Crew> List<T> readCrew(ByteBuffer in, String[] strings, int n, Supplier<T> create) {
+
+		int[] forename = getInts(in, n), surname = getInts(in, n), homeBase = getInts(in, n);
+		int[] offsets = getInts(in, n + 1);
+		int[] ratings = getInts(in, offsets[n]);
+		List<T> crew = new ArrayList<>(n);
+
+		for(int i = 0; i < n; i++)
+		{
+			T c = create.get();
+			c.setForename(string(strings, forename[i]));
+			c.setSurname(string(strings, surname[i]));
+			c.setHomeBase(string(strings, homeBase[i]));
+
+			for(int k = offsets[i]; k < offsets[i + 1]; k++)
+			{
+				c.setQualifiedFor(string(strings, ratings[k]));
+			}
+			crew.add(c);
+		}
+		return crew;
+	}
+
+	private static List<Route> readRoutes(ByteBuffer in, String[] strings) {
+
+		int n = in.getInt();
+		int[] day = getInts(in, n), depAirport = getInts(in, n), depCode = getInts(in, n);
+		int[] arrAirport = getInts(in, n), arrCode = getInts(in, n), flightNumber = getInts(in, n);
+		long[] departure = getLongs(in, n), arrival = getLongs(in, n), seconds = getLongs(in, n);
+		int[] nanos = getInts(in, n);
+		List<Route> routes = new ArrayList<>(n);
+
+		for(int i = 0; i < n; i++)
+		{
+			Route r = new Route();
+			r.setFlightNumber(flightNumber[i]);
+			r.setDayOfWeek(string(strings, day[i]));
+			r.setDepartureTime(departure[i] < 0 ? null : LocalTime.ofNanoOfDay(departure[i]));
+			r.setDepartureAirport(string(strings, depAirport[i]));
+			r.setDepartureAirportCode(string(strings, depCode[i]));
+			r.setArrivalAirport(string(strings, arrAirport[i]));
+			r.setArrivalAirportCode(string(strings, arrCode[i]));
+			r.setArrivalTime(arrival[i] < 0 ? null : LocalTime.ofNanoOfDay(arrival[i]));
+			r.setDuration(seconds[i] == Long.MIN_VALUE ? null : Duration.ofSeconds(seconds[i], nanos[i]));
+			routes.add(r);
+		}
+		return routes;
+	}
+
+	//forename, surname and home base columns, then where each one's type ratings start in the ratings column, then the ratings
+	private static int[][] crewColumns(List<? extends Crew> crew, Strings strings) {
+
+		int n = crew.size();
+		int[][] columns = new int[5][];
+		columns[0] = new int[n];
+		columns[1] = new int[n];
+		columns[2] = new int[n];
+		columns[3] = new int[n + 1];
+		List<String> ratings = new ArrayList<>();
+
+		for(int i = 0; i < n; i++)
+		{
+			Crew c = crew.get(i);
+			columns[0][i] = strings.id(c.getForename());
+			columns[1][i] = strings.id(c.getSurname());
+			columns[2][i] = strings.id(c.getHomeBase());
+			ratings.addAll(c.getTypeRatings());
+			columns[3][i + 1] = ratings.size();
+		}
+
+		columns[4] = new int[ratings.size()];
+
+		for(int k = 0; k < ratings.size(); k++)
+		{
+			columns[4][k] = strings.id(ratings.get(k));
+		}
+		return columns;
+	}
+
+	private static void putCrew(Writer out, int[][] columns) {
+
+		for(int[] column : columns)
+		{
+			out.putInts(column);
+		}
+	}
+
+	private static int[] getInts(ByteBuffer in, int n) {
+
+		int[] values = new int[n];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + 4 * n);
+		return values;
+	}
+
+	private static long[] getLongs(ByteBuffer in, int n) {
+
+		long[] values = new long[n];
+		in.asLongBuffer().get(values);
+		in.position(in.position() + 8 * n);
+		return values;
+	}
+
+	private static String getString(ByteBuffer in) {
+
+		int length = in.getInt();
+
+		if(length < 0)
+		{
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static String string(String[] strings, int id) {
+		return id < 0 ? null : strings[id];
+	}
+
+	//numbers each distinct string in the order first seen, null is -1
+	private static class Strings {
+
+		final Map<String, Integer> ids = new HashMap<>();
+		final List<String> list = new ArrayList<>();
+
+		int id(String s) {
+
+			if(s == null)
+			{
+				return -1;
+			}
+
+			Integer id = ids.get(s);
+
+			if(id == null)
+			{
+				id = list.size();
+				ids.put(s, id);
+				list.add(s);
+			}
+			return id;
+		}
+	}
+
+	//writes little endian primitives through one buffer, keeping the CRC32 of everything written
+	private static class Writer implements AutoCloseable {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+		private final CRC32 crc = new CRC32();
+
+		Writer(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void putByte(int b) {
+			room(1).put((byte) b);
+		}
+
+		void putInt(int i) {
+			room(4).putInt(i);
+		}
+
+		void putLong(long l) {
+			room(8).putLong(l);
+		}
+
+		void putInts(int[] values) {
+
+			for(int v : values)
+			{
+				room(4).putInt(v);
+			}
+		}
+
+		void putString(String s) {
+
+			if(s == null)
+			{
+				putInt(-1);
+				return;
+			}
+
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+
+			for(int i = 0; i < bytes.length; )
+			{
+				int n = Math.min(bytes.length - i, room(1).remaining());
+				buffer.put(bytes, i, n);
+				i += n;
+			}
+		}
+
+		//the CRC32 of everything before it goes last
+		void finish() {
+			flush();
+			buffer.putLong(crc.getValue());
+			flush();
+		}
+
+		private ByteBuffer room(int n) {
+
+			if(buffer.remaining() < n)
+			{
+				flush();
+			}
+			return buffer;
+		}
+
+		private void flush() {
+
+			buffer.flip();
+			ByteBuffer written = buffer.duplicate();
+			crc.update(written);
+
+			try {
+				while(buffer.hasRemaining())
+				{
+					channel.write(buffer);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			buffer.clear();
+		}
+
+		void force() throws IOException {
+			channel.force(true);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,524 @@
+package solution;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.DoubleBookedException;
+import baseclasses.FlightInfo;
+import baseclasses.Pilot;
+import baseclasses.Schedule;
+
+/**
+ * The FlightAllocator chooses the aircraft and crew for flights one at a time, remembering everybody it has
+ * booked so later flights don't clash with them. The Scheduler uses one for the whole horizon, or when
+ * scheduling in parallel, one for each partition of the flights and one more to merge what they chose.
+ * It isn't thread safe, but any number of them can share a ResourceRegistry
+ */
+public class FlightAllocator {
+
+	//what a crew member without a type rating for the aircraft, or based away from the departure airport, adds to a plan's cost
+	public static final int UNRATED_PENALTY = 100;
+	public static final int AWAY_PENALTY = 50;
+
+	//the most added to an aircraft's cost when choosing at random
+	public static final int AIRCRAFT_NOISE = 100;
+
+	//what planning records in Metrics: the time for each part of a plan, the candidates tried, and the Schedule's checks
+	private static final Metrics.Timer AIRCRAFT_PHASE = Metrics.timer("schedule.aircraft");
+	private static final Metrics.Timer CABIN_CREW_PHASE = Metrics.timer("schedule.cabinCrew");
+	private static final Metrics.Timer CAPTAIN_PHASE = Metrics.timer("schedule.captain");
+	private static final Metrics.Timer FIRST_OFFICER_PHASE = Metrics.timer("schedule.firstOfficer");
+	private static final Metrics.Counter CANDIDATES = Metrics.counter("schedule.candidates");
+	private static final Metrics.Counter CONFLICT_CHECKS = Metrics.counter("schedule.hasConflict");
+	private static final Metrics.Counter DOUBLE_BOOKED = Metrics.counter("schedule.doubleBooked");
+
+	/**
+	 * The aircraft and crew chosen for a flight, by their ResourceRegistry ids
+	 */
+	public static class Allocation {
+
+		/**
+		 * The aircraft's id, or -1 if no aircraft was free, in which case nobody else was chosen
+		 */
+		public int aircraft = -1;
+
+		/**
+		 * The captain's id, or -1 if none was free
+		 */
+		public int captain = -1;
+
+		/**
+		 * The first officer's id, or -1 if none was free
+		 */
+		public int firstOfficer = -1;
+
+		/**
+		 * The cabin crew's ids, which is shorter than the aircraft needs if not enough were free
+		 */
+		public int[] cabinCrew = new int[0];
+
+		/**
+		 * How far the plan is from ideal, from the aircraft's AircraftSelector cost plus UNRATED_PENALTY and
+		 * AWAY_PENALTY for each crew member they apply to; lower is better
+		 */
+		public int cost;
+	}
+
+	private final ResourceRegistry registry;
+	private final AircraftSelector aircraftSelector;
+
+	//who is busy when, kept alongside the Schedule so candidates can be ruled out without asking it
+	private final IntervalIndex aircraftBusy = new IntervalIndex();
+	private final IntervalIndex pilotsBusy = new IntervalIndex();
+	private final IntervalIndex cabinBusy = new IntervalIndex();
+
+	//per flight state, cleared and refilled rather than reallocated
+	private final BitSet busy = new BitSet();
+	private final BitSet candidates = new BitSet();
+	private final BitSet everyone = new BitSet();
+
+	//aircraft and crew that have been taken out of service, who are never chosen
+	private final BitSet withdrawnAircraft = new BitSet();
+	private final BitSet withdrawnPilots = new BitSet();
+	private final BitSet withdrawnCabinCrew = new BitSet();
+
+	//when set, a share of the flights have their aircraft cost varied and crew picked from a random place in each tier
+	private Random random;
+	private double rate;
+
+	/**
+	 * Creates an allocator with nobody booked
+	 * @param registry the aircraft and crew to choose from
+	 */
+	public FlightAllocator(ResourceRegistry registry) {
+
+		this.registry = registry;
+		this.aircraftSelector = new AircraftSelector(registry.allAircraft());
+		everyone.set(0, registry.cabinCrewCount());
+	}
+
+	/**
+	 * Makes the choices for some flights vary, so running again can give a different plan; by default the same choices are always made
+	 * @param random where the choices come from, or null to go back to the default
+	 * @param rate the share of flights, from 0 to 1, whose choices vary
+	 */
+	public void setRandom(Random random, double rate) {
+		this.random = random;
+		this.rate = rate;
+	}
+
+	/**
+	 * Chooses the aircraft and crew for a flight, without booking them
+	 * @param f the flight
+	 * @param passengers the forecast number of passengers, or -1 if there isn't one
+	 * @param s the schedule to confirm choices with, or null to rely only on what this allocator has booked
+	 * @return the choices made
+	 */
+	public Allocation plan(FlightInfo f, int passengers, Schedule s) {
+
+		Allocation plan = new Allocation();
+
+		Random vary = random != null && random.nextDouble() < rate ? random : null;
+		aircraftSelector.setNoise(vary, AIRCRAFT_NOISE);
+
+		long dep = IntervalIndex.departure(f);
+		long land = IntervalIndex.landing(f);
+		String base = f.getFlight().getDepartureAirportCode();
+
+		long t = Metrics.start();
+		aircraftBusy.busy(dep, land, busy).or(withdrawnAircraft);
+
+		if(busy.cardinality() >= registry.aircraftCount())
+		{
+			AIRCRAFT_PHASE.stop(t);
+			return plan;
+		}
+
+		//the cheapest free aircraft by seat fit and position, rather than shuffling until one fits
+		plan.aircraft = aircraftSelector.select(f, passengers, busy, id -> hasConflict(s, registry.aircraft(id), f));
+		AIRCRAFT_PHASE.stop(t);
+
+		if(plan.aircraft == -1)
+		{
+			return plan;
+		}
+
+		Aircraft a = registry.aircraft(plan.aircraft);
+		String type = a.getTypeCode();
+		plan.cost = AircraftSelector.cost(a, passengers, base.equals(aircraftSelector.positionAt(plan.aircraft, dep)));
+
+		//cabin crew: rated and based at the departure airport, then rated, then anyone free
+		t = Metrics.start();
+		cabinBusy.busy(dep, land, busy).or(withdrawnCabinCrew);
+
+		BitSet cabinRated = registry.cabinCrewRatedFor(type);
+		BitSet cabinBased = registry.cabinCrewBasedAt(base);
+
+		int[] cabin = new int[a.getCabinCrewRequired()];
+		int found = 0;
+
+		while(found < cabin.length)
+		{
+			int id = pick(candidates, busy, vary, id2 -> hasConflict(s, registry.cabinCrew(id2), f),
+					cabinRated, cabinBased, null,
+					cabinRated, null, null,
+					everyone, null, null);
+
+			if(id == -1)
+			{
+				break;
+			}
+			cabin[found++] = id;
+			plan.cost += penalty(cabinRated, cabinBased, id);
+		}
+		plan.cabinCrew = found == cabin.length ? cabin : Arrays.copyOf(cabin, found);
+		CABIN_CREW_PHASE.stop(t);
+
+		//pilots: rated and based there, then rated, then based there, then any pilot of the rank
+		t = Metrics.start();
+		pilotsBusy.busy(dep, land, busy).or(withdrawnPilots);
+
+		BitSet pilotsRated = registry.pilotsRatedFor(type);
+		BitSet pilotsBased = registry.pilotsBasedAt(base);
+
+		for(Pilot.Rank rank : Pilot.Rank.values())
+		{
+			BitSet ofRank = registry.pilotsOfRank(rank);
+
+			int id = pick(candidates, busy, vary, id2 -> hasConflict(s, registry.pilot(id2), f),
+					ofRank, pilotsRated, pilotsBased,
+					ofRank, pilotsRated, null,
+					ofRank, pilotsBased, null,
+					ofRank, null, null);
+
+			if(id != -1)
+			{
+				plan.cost += penalty(pilotsRated, pilotsBased, id);
+			}
+
+			if(rank == Pilot.Rank.CAPTAIN)
+			{
+				plan.captain = id;
+				CAPTAIN_PHASE.stop(t);
+			}
+			else
+			{
+				plan.firstOfficer = id;
+				FIRST_OFFICER_PHASE.stop(t);
+			}
+			t = Metrics.start();
+		}
+		return plan;
+	}
+
+	/**
+	 * Checks whether everybody in a plan is still free for the flight, as far as this allocator and the schedule know
+	 * @param plan the choices to check, which may have been made by another allocator
+	 * @param f the flight they are for
+	 * @param s the schedule to confirm with, or null to rely only on what this allocator has booked
+	 * @return true if the plan can be booked without a clash
+	 */
+	public boolean isFree(Allocation plan, FlightInfo f, Schedule s) {
+
+		long dep = IntervalIndex.departure(f);
+		long land = IntervalIndex.landing(f);
+
+		if(plan.aircraft != -1 && (! aircraftBusy.isFree(plan.aircraft, dep, land) || hasConflict(s, registry.aircraft(plan.aircraft), f)))
+		{
+			return false;
+		}
+
+		for(int id : plan.cabinCrew)
+		{
+			if(! cabinBusy.isFree(id, dep, land) || hasConflict(s, registry.cabinCrew(id), f))
+			{
+				return false;
+			}
+		}
+
+		for(int id : new int[] {plan.captain, plan.firstOfficer})
+		{
+			if(id != -1 && (! pilotsBusy.isFree(id, dep, land) || hasConflict(s, registry.pilot(id), f)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Books everybody in a plan for the flight, allocating them in the schedule if one is given
+	 * Anybody the schedule won't accept isn't booked
+	 * @param plan the choices to book
+	 * @param f the flight they are for
+	 * @param s the schedule to allocate them in, or null to only book them in this allocator
+	 */
+	public void book(Allocation plan, FlightInfo f, Schedule s) {
+
+		if(plan.aircraft == -1)
+		{
+			return;
+		}
+
+		long dep = IntervalIndex.departure(f);
+		long land = IntervalIndex.landing(f);
+
+		try {
+			if(s != null)
+			{
+				s.allocateAircraftTo(registry.aircraft(plan.aircraft), f);
+			}
+			aircraftSelector.allocated(plan.aircraft, f);
+			aircraftBusy.add(plan.aircraft, dep, land);
+		} catch (DoubleBookedException e) {
+			doubleBooked(e);
+		}
+
+		for(int id : plan.cabinCrew)
+		{
+			try {
+				if(s != null)
+				{
+					s.allocateCabinCrewTo(registry.cabinCrew(id), f);
+				}
+				cabinBusy.add(id, dep, land);
+			} catch (DoubleBookedException e) {
+				doubleBooked(e);
+			}
+		}
+
+		if(plan.captain != -1)
+		{
+			try {
+				if(s != null)
+				{
+					s.allocateCaptainTo(registry.pilot(plan.captain), f);
+				}
+				pilotsBusy.add(plan.captain, dep, land);
+			} catch (DoubleBookedException e) {
+				doubleBooked(e);
+			}
+		}
+
+		if(plan.firstOfficer != -1)
+		{
+			try {
+				if(s != null)
+				{
+					s.allocateFirstOfficerTo(registry.pilot(plan.firstOfficer), f);
+				}
+				pilotsBusy.add(plan.firstOfficer, dep, land);
+			} catch (DoubleBookedException e) {
+				doubleBooked(e);
+			}
+		}
+	}
+
+	//the Schedule turned down someone this allocator thought was free, so they aren't booked
+	private static void doubleBooked(DoubleBookedException e) {
+		System.err.println("Error booking flight:" + e);
+		DOUBLE_BOOKED.increment();
+	}
+
+	//the Schedule's own check, counted in Metrics; without a schedule there is nothing to check
+	private static boolean hasConflict(Schedule s, Aircraft a, FlightInfo f) {
+
+		if(s == null)
+		{
+			return false;
+		}
+		CONFLICT_CHECKS.increment();
+		return s.hasConflict(a, f);
+	}
+
+	private static boolean hasConflict(Schedule s, Crew c, FlightInfo f) {
+
+		if(s == null)
+		{
+			return false;
+		}
+		CONFLICT_CHECKS.increment();
+		return s.hasConflict(c, f);
+	}
+
+	private static int penalty(BitSet rated, BitSet based, int id) {
+		return (rated.get(id) ? 0 : UNRATED_PENALTY) + (based.get(id) ? 0 : AWAY_PENALTY);
+	}
+
+	/**
+	 * Takes back everybody booked by a plan, so they are free for the flight's time again,
+	 * and puts the aircraft back where it was before the flight if it has no later one
+	 * @param plan the plan, which must have been booked with this allocator
+	 * @param f the flight it was booked for
+	 */
+	public void release(Allocation plan, FlightInfo f) {
+
+		if(plan.aircraft == -1)
+		{
+			return;
+		}
+
+		long dep = IntervalIndex.departure(f);
+		aircraftBusy.remove(plan.aircraft, dep);
+		aircraftSelector.released(plan.aircraft, f);
+
+		for(int id : plan.cabinCrew)
+		{
+			cabinBusy.remove(id, dep);
+		}
+		if(plan.captain != -1)
+		{
+			pilotsBusy.remove(plan.captain, dep);
+		}
+		if(plan.firstOfficer != -1)
+		{
+			pilotsBusy.remove(plan.firstOfficer, dep);
+		}
+	}
+
+	/**
+	 * Forgets every booking that ends at or before the given minute, to save memory once no flights before then are left to plan
+	 * Where aircraft are is still remembered, but a forgotten booking can't be released
+	 * @param minute the epoch minute, as given by IntervalIndex.minutes()
+	 */
+	public void forgetEndingBy(long minute) {
+		aircraftBusy.removeEndingBy(minute);
+		aircraftSelector.forgetBefore(minute);
+		pilotsBusy.removeEndingBy(minute);
+		cabinBusy.removeEndingBy(minute);
+	}
+
+	/**
+	 * Puts an aircraft into service, registering it if it is new or undoing withdrawAircraft() if it isn't
+	 * A new aircraft is added to this allocator's registry, but other allocators already using the registry won't choose it
+	 * @param a the aircraft
+	 * @return its id
+	 */
+	public int addAircraft(Aircraft a) {
+
+		int id = registry.idOf(a);
+
+		if(id == -1)
+		{
+			id = registry.add(a);
+			aircraftSelector.add(a);
+		}
+		withdrawnAircraft.clear(id);
+		return id;
+	}
+
+	/**
+	 * Puts a pilot into service, registering them if they are new or undoing withdrawPilot() if they aren't
+	 * @param p the pilot
+	 * @return their id
+	 */
+	public int addPilot(Pilot p) {
+
+		int id = registry.idOf(p);
+
+		if(id == -1)
+		{
+			id = registry.add(p);
+		}
+		withdrawnPilots.clear(id);
+		return id;
+	}
+
+	/**
+	 * Puts a cabin crew member into service, registering them if they are new or undoing withdrawCabinCrew() if they aren't
+	 * @param c the cabin crew member
+	 * @return their id
+	 */
+	public int addCabinCrew(CabinCrew c) {
+
+		int id = registry.idOf(c);
+
+		if(id == -1)
+		{
+			id = registry.add(c);
+			everyone.set(id);
+		}
+		withdrawnCabinCrew.clear(id);
+		return id;
+	}
+
+	/**
+	 * Stops an aircraft being chosen for any more flights; flights it's already booked on aren't changed
+	 * @param id the aircraft's id
+	 */
+	public void withdrawAircraft(int id) {
+		withdrawnAircraft.set(id);
+	}
+
+	/**
+	 * Stops a pilot being chosen for any more flights; flights they're already booked on aren't changed
+	 * @param id the pilot's id
+	 */
+	public void withdrawPilot(int id) {
+		withdrawnPilots.set(id);
+	}
+
+	/**
+	 * Stops a cabin crew member being chosen for any more flights; flights they're already booked on aren't changed
+	 * @param id the cabin crew member's id
+	 */
+	public void withdrawCabinCrew(int id) {
+		withdrawnCabinCrew.set(id);
+	}
+
+	/**
+	 * Picks the lowest id in the earliest tier that has anybody usable, or with a random, starts from a random id in the tier and wraps around
+	 * Each tier is given as three bitsets that are intersected, with null meaning no restriction (the first must be given)
+	 * The id picked is marked busy so it can't be picked again for the same flight
+	 * @param candidates a bitset to work in, so one isn't allocated for every pick
+	 * @param busy the ids that can't be used
+	 * @param random where to start in the tier comes from, or null to start from the lowest id
+	 * @param conflicts the final check with the Schedule, only made for an id that passes everything else
+	 * @param tiers groups of three bitsets describing what to look for, most wanted first
+	 * @return the chosen id, or -1 if nobody matches any tier
+	 */
+	private static int pick(BitSet candidates, BitSet busy, Random random, IntPredicate conflicts, BitSet... tiers) {
+
+		int tried = 0;
+
+		for(int t = 0; t < tiers.length; t += 3)
+		{
+			candidates.clear();
+			candidates.or(tiers[t]);
+
+			for(int k = t + 1; k < t + 3; k++)
+			{
+				if(tiers[k] != null)
+				{
+					candidates.and(tiers[k]);
+				}
+			}
+			candidates.andNot(busy);
+
+			//tried ids are cleared from the candidates, so wrapping around to the start ends once all have been tried
+			int id = candidates.nextSetBit(random == null || candidates.isEmpty() ? 0 : random.nextInt(candidates.length()));
+
+			while(id >= 0 || (id = candidates.nextSetBit(0)) >= 0)
+			{
+				busy.set(id);//either picked now, or the Schedule says they're busy
+				candidates.clear(id);
+				tried++;
+
+				if(! conflicts.test(id))
+				{
+					CANDIDATES.add(tried);
+					return id;
+				}
+				id = candidates.nextSetBit(id + 1);
+			}
+		}
+		CANDIDATES.add(tried);
+		return -1;
+	}
+
+}
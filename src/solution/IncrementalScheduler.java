@@ -0,0 +1,445 @@
+package solution;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.IScheduler;
+import baseclasses.Pilot;
+import baseclasses.Route;
+import baseclasses.Schedule;
+
+/**
+ * The IncrementalScheduler makes a schedule the same way as the Scheduler, but remembers the choices it made
+ * so that when something changes - an aircraft or crew member taken out of service or put in, a new forecast, a route
+ * added or cancelled - it can repair the schedule by choosing again for only the flights affected, plus any flights
+ * that couldn't be completed before in case the change freed somebody up.
+ * The Schedule can't take allocations back, so each repair books the remembered choices into a new Schedule;
+ * that is quick next to choosing, which is only done for the flights affected
+ */
+public class IncrementalScheduler implements IScheduler {
+
+	private IPassengerNumbersDAO passengerNumbersDAO;
+	private LocalDate startDate;
+	private LocalDate endDate;
+
+	private ResourceRegistry registry;
+	private FlightAllocator allocator;
+	private ChangedRoutes routes;
+
+	//every flight's choices, keyed as in the PassengerNumbersDAO by flight number and epoch day
+	private final Map<Long, Entry> entries = new HashMap<>();
+	private final Set<Long> incomplete = new HashSet<>();
+
+	//the flights each aircraft and crew member is booked on, by id
+	private final Map<Integer, Set<Long>> aircraftFlights = new HashMap<>();
+	private final Map<Integer, Set<Long>> pilotFlights = new HashMap<>();
+	private final Map<Integer, Set<Long>> cabinCrewFlights = new HashMap<>();
+
+	//forecasts given in a change, used instead of the DAO's
+	private final Map<Long, Integer> forecasts = new HashMap<>();
+
+	private int replanned;
+
+	private static class Entry {
+		final FlightInfo flight;
+		int passengers;
+		FlightAllocator.Allocation plan;
+
+		Entry(FlightInfo flight, int passengers) {
+			this.flight = flight;
+			this.passengers = passengers;
+		}
+	}
+
+	/**
+	 * Generates a schedule and remembers how, ready for repair()
+	 * @param aircraftDAO the DAO for the aircraft to be used when scheduling
+	 * @param crewDAO the DAO for the crew to be used when scheduling
+	 * @param routeDAO the DAO to use for routes when scheduling
+	 * @param passengerNumbersDAO the DAO to use for passenger numbers when scheduling
+	 * @param startDate the start of the scheduling horizon
+	 * @param endDate the end of the scheduling horizon
+	 * @return the generated schedule, the same as the Scheduler's
+	 */
+	@Override
+	public Schedule generateSchedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO,
+			IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate) {
+
+		this.passengerNumbersDAO = passengerNumbersDAO;
+		this.startDate = startDate;
+		this.endDate = endDate;
+
+		registry = new ResourceRegistry(aircraftDAO, crewDAO);
+		allocator = new FlightAllocator(registry);
+		routes = new ChangedRoutes(routeDAO);
+
+		entries.clear();
+		incomplete.clear();
+		aircraftFlights.clear();
+		pilotFlights.clear();
+		cabinCrewFlights.clear();
+		forecasts.clear();
+
+		return schedule(new HashSet<>(), true);
+	}
+
+	/**
+	 * Repairs the last schedule made for a change, choosing again only for the flights it affects
+	 * Changes are cumulative, each repair builds on the ones before it
+	 * @param change what has changed since the last schedule was made or repaired
+	 * @return the repaired schedule, a new object
+	 * @throws IllegalStateException if generateSchedule() hasn't been called yet
+	 */
+	public Schedule repair(ScheduleChange change) {
+
+		if(allocator == null)
+		{
+			throw new IllegalStateException("generateSchedule() must be called before repair()");
+		}
+
+		Set<Long> affected = new HashSet<>();
+
+		for(Aircraft a : change.getRemovedAircraft())
+		{
+			int id = registry.idOf(a);
+
+			if(id != -1)
+			{
+				allocator.withdrawAircraft(id);
+				affected.addAll(aircraftFlights.getOrDefault(id, new HashSet<>()));
+			}
+		}
+
+		for(Crew c : change.getRemovedCrew())
+		{
+			if(c instanceof Pilot && registry.idOf((Pilot) c) != -1)
+			{
+				int id = registry.idOf((Pilot) c);
+				allocator.withdrawPilot(id);
+				affected.addAll(pilotFlights.getOrDefault(id, new HashSet<>()));
+			}
+			else if(c instanceof CabinCrew && registry.idOf((CabinCrew) c) != -1)
+			{
+				int id = registry.idOf((CabinCrew) c);
+				allocator.withdrawCabinCrew(id);
+				affected.addAll(cabinCrewFlights.getOrDefault(id, new HashSet<>()));
+			}
+		}
+
+		//new aircraft and crew get the next ids, and can be chosen for the affected flights and any incomplete ones
+		for(Aircraft a : change.getAddedAircraft())
+		{
+			allocator.addAircraft(a);
+		}
+
+		for(Crew c : change.getAddedCrew())
+		{
+			if(c instanceof Pilot)
+			{
+				allocator.addPilot((Pilot) c);
+			}
+			else if(c instanceof CabinCrew)
+			{
+				allocator.addCabinCrew((CabinCrew) c);
+			}
+		}
+
+		for(Map.Entry<Long, Integer> e : change.getForecasts().entrySet())
+		{
+			forecasts.put(e.getKey(), e.getValue());
+			Entry entry = entries.get(e.getKey());
+
+			if(entry != null && entry.passengers != e.getValue())
+			{
+				entry.passengers = e.getValue();
+				affected.add(e.getKey());
+			}
+		}
+
+		for(Route r : change.getCancelledRoutes())
+		{
+			routes.cancel(r);
+		}
+		for(Route r : change.getAddedRoutes())
+		{
+			routes.add(r);
+		}
+
+		return schedule(affected, false);
+	}
+
+	/**
+	 * Returns the number of flights chosen for in the last call to generateSchedule() or repair()
+	 * @return the number of flights
+	 */
+	public int getReplanned() {
+		return replanned;
+	}
+
+	//chooses for the affected flights, and any new ones, then books everything in a new Schedule
+	private Schedule schedule(Set<Long> affected, boolean first) {
+
+		Schedule s = new Schedule(routes, startDate, endDate);
+		List<FlightInfo> flights = s.getRemainingAllocations();
+
+		//where each flight is in departure order, for choosing in the same order as the Scheduler
+		Map<Long, Integer> position = new HashMap<>();
+		List<FlightInfo> added = new ArrayList<>();
+
+		for(FlightInfo f : flights)
+		{
+			position.put(key(f), position.size());
+		}
+
+		//flights that have been cancelled give back who they had, and so do flights whose route has been
+		//replaced by a changed one with the same number and day, which are then chosen for again as new flights
+		for(Iterator<Map.Entry<Long, Entry>> i = entries.entrySet().iterator(); i.hasNext(); )
+		{
+			Map.Entry<Long, Entry> e = i.next();
+			Integer at = position.get(e.getKey());
+
+			if(at == null || flights.get(at).getFlight() != e.getValue().flight.getFlight())
+			{
+				release(e.getKey(), e.getValue());
+				incomplete.remove(e.getKey());
+				affected.remove(e.getKey());
+				i.remove();
+			}
+		}
+
+		for(FlightInfo f : flights)
+		{
+			if(! entries.containsKey(key(f)))
+			{
+				added.add(f);
+			}
+		}
+
+		//the first time, an on-demand DAO can fetch the whole horizon at once
+		int[] pass = first ? Scheduler.passengersFor(added, passengerNumbersDAO, startDate, endDate) : null;
+
+		for(int i = 0; i < added.size(); i++)
+		{
+			FlightInfo f = added.get(i);
+			long key = key(f);
+			int forecast = pass != null ? pass[i]
+					: forecasts.containsKey(key) ? forecasts.get(key)
+					: passengerNumbersDAO.getPassengerNumbersFor(f.getFlight().getFlightNumber(), f.getDepartureDateTime().toLocalDate());
+
+			entries.put(key, new Entry(f, forecast));
+			affected.add(key);
+		}
+		affected.addAll(incomplete);
+
+		//everybody is given back before anybody chooses, so the affected flights can take each other's places
+		List<Long> replan = affected.stream()
+				.sorted(Comparator.comparing(position::get))
+				.collect(Collectors.toList());
+
+		for(long key : replan)
+		{
+			release(key, entries.get(key));
+		}
+
+		for(long key : replan)
+		{
+			Entry e = entries.get(key);
+			e.plan = allocator.plan(e.flight, e.passengers, null);
+			allocator.book(e.plan, e.flight, null);
+			use(key, e.plan);
+
+			if(isComplete(e.plan))
+			{
+				incomplete.remove(key);
+			}
+			else
+			{
+				incomplete.add(key);
+			}
+		}
+		replanned = replan.size();
+
+		//a fresh allocator just to book with, as the remembered one already has everybody booked
+		FlightAllocator booking = new FlightAllocator(registry);
+
+		for(FlightInfo f : flights)
+		{
+			Scheduler.complete(s, f, entries.get(key(f)).plan, booking, first);
+		}
+		return s;
+	}
+
+	private void release(long key, Entry e) {
+
+		if(e.plan == null)
+		{
+			return;
+		}
+
+		allocator.release(e.plan, e.flight);
+		remove(aircraftFlights, e.plan.aircraft, key);
+		remove(pilotFlights, e.plan.captain, key);
+		remove(pilotFlights, e.plan.firstOfficer, key);
+
+		for(int id : e.plan.cabinCrew)
+		{
+			remove(cabinCrewFlights, id, key);
+		}
+		e.plan = null;
+	}
+
+	private void use(long key, FlightAllocator.Allocation plan) {
+
+		if(plan.aircraft == -1)
+		{
+			return;
+		}
+
+		aircraftFlights.computeIfAbsent(plan.aircraft, k -> new HashSet<>()).add(key);
+
+		for(int id : new int[] {plan.captain, plan.firstOfficer})
+		{
+			if(id != -1)
+			{
+				pilotFlights.computeIfAbsent(id, k -> new HashSet<>()).add(key);
+			}
+		}
+		for(int id : plan.cabinCrew)
+		{
+			cabinCrewFlights.computeIfAbsent(id, k -> new HashSet<>()).add(key);
+		}
+	}
+
+	private static void remove(Map<Integer, Set<Long>> flights, int id, long key) {
+
+		Set<Long> booked = flights.get(id);
+
+		if(booked != null)
+		{
+			booked.remove(key);
+		}
+	}
+
+	private boolean isComplete(FlightAllocator.Allocation plan) {
+		return plan.aircraft != -1 && plan.captain != -1 && plan.firstOfficer != -1
+				&& plan.cabinCrew.length >= registry.aircraft(plan.aircraft).getCabinCrewRequired();
+	}
+
+	private static long key(FlightInfo f) {
+		return PassengerNumbersDAO.key(f.getFlight().getFlightNumber(), f.getDepartureDateTime().toLocalDate().toEpochDay());
+	}
+
+	/**
+	 * The routes of the DAO the schedule was first made with, with the routes added and cancelled since
+	 * It is only a view for the Schedule to read: routes are changed through a ScheduleChange, so loading
+	 * and resetting do nothing, and the underlying DAO is never changed through it
+	 */
+	private static class ChangedRoutes implements IRouteDAO {
+
+		private final IRouteDAO routes;
+		private final List<Route> added = new ArrayList<>();
+		//the routes of the underlying DAO that are hidden, because they are cancelled or an added route replaces them
+		private final Set<String> cancelled = new HashSet<>();
+
+		ChangedRoutes(IRouteDAO routes) {
+			this.routes = routes;
+		}
+
+		//an added route takes the place of any route already flown with its number on its day
+		void add(Route r) {
+			cancelled.add(id(r));
+			added.removeIf(a -> id(a).equals(id(r)));
+			added.add(r);
+		}
+
+		void cancel(Route r) {
+			cancelled.add(id(r));
+			added.removeIf(a -> id(a).equals(id(r)));
+		}
+
+		//a flight number is only flown once on each day of the week
+		private static String id(Route r) {
+			return r.getFlightNumber() + "/" + r.getDayOfWeek();
+		}
+
+		private List<Route> changed(List<Route> found, Predicate<Route> matches) {
+
+			if(! cancelled.isEmpty())
+			{
+				found.removeIf(r -> cancelled.contains(id(r)));
+			}
+			for(Route r : added)
+			{
+				if(matches.test(r))
+				{
+					found.add(r);
+				}
+			}
+			return found;
+		}
+
+		//read only, see above
+		@Override
+		public void loadRouteData(Path p) {
+		}
+
+		@Override
+		public List<Route> findRoutesByDayOfWeek(String dayOfWeek) {
+			return changed(routes.findRoutesByDayOfWeek(dayOfWeek), r -> r.getDayOfWeek().equals(dayOfWeek));
+		}
+
+		@Override
+		public List<Route> findRoutesByDepartureAirportAndDay(String airportCode, String dayOfWeek) {
+			return changed(routes.findRoutesByDepartureAirportAndDay(airportCode, dayOfWeek),
+					r -> r.getDayOfWeek().equals(dayOfWeek) && r.getDepartureAirportCode().equals(airportCode));
+		}
+
+		@Override
+		public List<Route> findRoutesDepartingAirport(String airportCode) {
+			return changed(routes.findRoutesDepartingAirport(airportCode), r -> r.getDepartureAirportCode().equals(airportCode));
+		}
+
+		@Override
+		public List<Route> findRoutesbyDate(LocalDate date) {
+
+			String day = date.getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+			return changed(routes.findRoutesbyDate(date), r -> r.getDayOfWeek().equals(day));
+		}
+
+		@Override
+		public List<Route> getAllRoutes() {
+			return changed(routes.getAllRoutes(), r -> true);
+		}
+
+		@Override
+		public int getNumberOfRoutes() {
+			return getAllRoutes().size();
+		}
+
+		//read only, see above
+		@Override
+		public void reset() {
+		}
+	}
+
+}
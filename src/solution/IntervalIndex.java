@@ -0,0 +1,254 @@
+package solution;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import baseclasses.FlightInfo;
+
+/**
+ * The IntervalIndex records when each resource (an aircraft or crew member, by its ResourceRegistry id) is busy,
+ * as [departure, landing) intervals in epoch minutes, so the scheduler can ask whether a resource is free for a
+ * flight in logarithmic time, or which resources out of a whole pool are busy, without going through the Schedule
+ */
+public class IntervalIndex {
+
+	//each resource's bookings, start minute to end minute; a resource's bookings never overlap
+	private final List<NavigableMap<Long, Long>> byResource = new ArrayList<>();
+
+	//the ids of the resources with a booking starting at each minute, for finding everything busy in a window
+	private final NavigableMap<Long, IdList> byStart = new TreeMap<>();
+	private long longest;
+
+	/**
+	 * Returns the minute a time falls in, counted from 1970-01-01T00:00
+	 * @param t the time
+	 * @return the epoch minute
+	 */
+	public static long minutes(LocalDateTime t) {
+		return t.toEpochSecond(ZoneOffset.UTC) / 60;
+	}
+
+	/**
+	 * Returns the minute a flight departs
+	 * @param f the flight
+	 * @return the epoch minute of its departure
+	 */
+	public static long departure(FlightInfo f) {
+		return minutes(f.getDepartureDateTime());
+	}
+
+	/**
+	 * Returns the minute a flight lands
+	 * @param f the flight
+	 * @return the epoch minute of its landing
+	 */
+	public static long landing(FlightInfo f) {
+		return minutes(f.getLandingDateTime());
+	}
+
+	/**
+	 * Checks whether a resource has no booking overlapping [start, end)
+	 * @param id the resource's id
+	 * @param start the first minute needed
+	 * @param end the minute it is needed until
+	 * @return true if the resource is free for the whole interval
+	 */
+	public boolean isFree(int id, long start, long end) {
+
+		NavigableMap<Long, Long> bookings = id < byResource.size() ? byResource.get(id) : null;
+
+		if(bookings == null)
+		{
+			return true;
+		}
+
+		//only the last booking starting at or before start, and the first starting after it, can overlap
+		Map.Entry<Long, Long> before = bookings.floorEntry(start);
+
+		if(before != null && before.getValue() > start)
+		{
+			return false;
+		}
+
+		Map.Entry<Long, Long> after = bookings.higherEntry(start);
+		return after == null || after.getKey() >= end;
+	}
+
+	/**
+	 * Books a resource for [start, end)
+	 * @param id the resource's id
+	 * @param start the first minute it is busy
+	 * @param end the minute it is busy until
+	 */
+	public void add(int id, long start, long end) {
+
+		while(byResource.size() <= id)
+		{
+			byResource.add(null);
+		}
+		if(byResource.get(id) == null)
+		{
+			byResource.set(id, new TreeMap<>());
+		}
+
+		if(byResource.get(id).put(start, end) == null)
+		{
+			byStart.computeIfAbsent(start, k -> new IdList()).add(id);
+		}
+		longest = Math.max(longest, end - start);
+	}
+
+	/**
+	 * Removes the booking a resource has starting at the given minute, if there is one
+	 * @param id the resource's id
+	 * @param start the minute the booking starts
+	 */
+	public void remove(int id, long start) {
+
+		NavigableMap<Long, Long> bookings = id < byResource.size() ? byResource.get(id) : null;
+
+		if(bookings == null || bookings.remove(start) == null)
+		{
+			return;
+		}
+
+		IdList starting = byStart.get(start);
+		starting.remove(id);
+
+		if(starting.size == 0)
+		{
+			byStart.remove(start);
+		}
+	}
+
+	/**
+	 * Returns when a resource's booking starting at the given minute ends
+	 * @param id the resource's id
+	 * @param start the minute the booking starts
+	 * @return the minute the booking ends, or -1 if there is no such booking
+	 */
+	public long endOf(int id, long start) {
+
+		NavigableMap<Long, Long> bookings = id < byResource.size() ? byResource.get(id) : null;
+		Long end = bookings == null ? null : bookings.get(start);
+		return end == null ? -1 : end;
+	}
+
+	/**
+	 * Finds every resource with a booking overlapping [start, end), setting their ids in the given bitset
+	 * Bookings are found by start time, so this costs in proportion to the bookings that start near the window
+	 * @param start the first minute of the window
+	 * @param end the minute the window lasts until
+	 * @param busy the bitset to fill, which is cleared first so it can be reused
+	 * @return the busy bitset
+	 */
+	public BitSet busy(long start, long end, BitSet busy) {
+
+		busy.clear();
+
+		//a booking overlapping the window can't have started more than the longest booking before it
+		for(Map.Entry<Long, IdList> e : byStart.subMap(start - longest, false, end, false).entrySet())
+		{
+			IdList ids = e.getValue();
+
+			for(int i = 0; i < ids.size; i++)
+			{
+				int id = ids.ids[i];
+
+				if(byResource.get(id).get(e.getKey()) > start)
+				{
+					busy.set(id);
+				}
+			}
+		}
+		return busy;
+	}
+
+	/**
+	 * Finds the members of a pool that are free for the whole of [start, end)
+	 * @param pool the ids to choose from
+	 * @param start the first minute needed
+	 * @param end the minute they are needed until
+	 * @return a new bitset of the free ids in the pool
+	 */
+	public BitSet free(BitSet pool, long start, long end) {
+
+		BitSet free = (BitSet) pool.clone();
+		free.andNot(busy(start, end, new BitSet()));
+		return free;
+	}
+
+	/**
+	 * Removes every booking that ends at or before the given minute, which can't overlap anything from then on
+	 * @param minute the minute
+	 */
+	public void removeEndingBy(long minute) {
+
+		//bookings starting at or after the minute end after it
+		for(Iterator<Map.Entry<Long, IdList>> i = byStart.headMap(minute, false).entrySet().iterator(); i.hasNext(); )
+		{
+			Map.Entry<Long, IdList> e = i.next();
+			IdList ids = e.getValue();
+
+			for(int k = ids.size - 1; k >= 0; k--)
+			{
+				int id = ids.ids[k];
+				NavigableMap<Long, Long> bookings = byResource.get(id);
+
+				if(bookings.get(e.getKey()) <= minute)
+				{
+					bookings.remove(e.getKey());
+					ids.remove(id);
+				}
+			}
+
+			if(ids.size == 0)
+			{
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes every booking
+	 */
+	public void clear() {
+		byResource.clear();
+		byStart.clear();
+		longest = 0;
+	}
+
+	//a small growable list of ids, to avoid boxing every booking
+	private static class IdList {
+		int[] ids = new int[2];
+		int size;
+
+		void add(int id) {
+			if(size == ids.length)
+			{
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+
+		void remove(int id) {
+			for(int i = 0; i < size; i++)
+			{
+				if(ids[i] == id)
+				{
+					ids[i] = ids[--size];
+					return;
+				}
+			}
+		}
+	}
+
+}
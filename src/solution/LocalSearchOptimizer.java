@@ -0,0 +1,597 @@
+package solution;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import baseclasses.FlightInfo;
+import baseclasses.Pilot;
+
+/**
+ * The LocalSearchOptimizer improves the choices made for a schedule by simulated annealing.
+ * It repeatedly tries a random move - giving a flight a different aircraft or crew member, or swapping them between
+ * two flights close together in time - and keeps it if it lowers the ScheduleObjective's score, or sometimes
+ * if it doesn't, less often as the search cools. Each move is scored from the flights it changes, and for an aircraft
+ * move, the position costs of the aircraft's flights between them and just after,
+ * and only moves that keep everybody free of overlapping flights and every aircraft's cabin crew requirement met are made.
+ * The Schedule can't take allocations back, so the optimizer works on FlightAllocator plans and the caller books the result
+ */
+public class LocalSearchOptimizer {
+
+	public static final long DEFAULT_MOVES = 2_000_000;
+	public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(30);
+
+	//in the objective's units, starting any hotter undoes more of the first schedule than the search makes up
+	public static final double START_TEMPERATURE = 5;
+	public static final double END_TEMPERATURE = 0.1;
+
+	//swaps are between flights at most this far apart in departure order, further apart they rarely fit
+	public static final int SWAP_WINDOW = 64;
+
+	//how often, in moves, the temperature and clock are checked
+	private static final int CHECK_EVERY = 1024;
+
+	private final long moves;
+	private final Duration budget;
+	private final long seed;
+	private ScheduleObjective.Factory objective = StandardObjective::new;
+
+	//about the last run
+	private long tried;
+	private long accepted;
+	private long startCost;
+	private long endCost;
+
+	/**
+	 * Creates an optimizer that tries DEFAULT_MOVES moves within the DEFAULT_BUDGET
+	 */
+	public LocalSearchOptimizer() {
+		this(DEFAULT_MOVES, DEFAULT_BUDGET, 0);
+	}
+
+	/**
+	 * Creates an optimizer
+	 * @param moves the number of moves to try, the search cools over this many
+	 * @param budget the longest to spend, the search stops early if it runs out
+	 * @param seed the seed for choosing moves, the same seed and plans give the same result if the budget doesn't run out
+	 */
+	public LocalSearchOptimizer(long moves, Duration budget, long seed) {
+
+		if(moves < 0 || budget.isNegative())
+		{
+			throw new IllegalArgumentException("moves and budget can't be negative");
+		}
+		this.moves = moves;
+		this.budget = budget;
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets what the optimizer minimises, by default the StandardObjective
+	 * @param objective creates the objective for each horizon optimised
+	 */
+	public void setObjective(ScheduleObjective.Factory objective) {
+		this.objective = objective;
+	}
+
+	/**
+	 * Improves the plans for a horizon's flights
+	 * @param registry the aircraft and crew the plans' ids refer to
+	 * @param flights the flights, in departure order
+	 * @param passengers the forecast for each flight, or -1 where there isn't one
+	 * @param plans the plan for each flight, as booked; these aren't changed
+	 * @return new plans, or the ones given if the search couldn't improve on them
+	 */
+	public FlightAllocator.Allocation[] optimise(ResourceRegistry registry, List<FlightInfo> flights, int[] passengers, FlightAllocator.Allocation[] plans) {
+
+		Search search = new Search(registry, objective.create(registry, flights, passengers), flights, plans, new Random(seed));
+		startCost = search.total;
+
+		search.run(moves, System.nanoTime() + budget.toNanos());
+		tried = search.tried;
+		accepted = search.accepted;
+
+		//the search ends cold enough that where it stops is as good as it found, but check it's no worse than the start
+		FlightAllocator.Allocation[] result = search.total <= startCost ? search.plans() : plans;
+		endCost = search.score(result);
+		return result;
+	}
+
+	/**
+	 * Returns the number of moves tried in the last run, including those that didn't fit
+	 * @return the number of moves tried
+	 */
+	public long getMovesTried() {
+		return tried;
+	}
+
+	/**
+	 * Returns the number of moves made in the last run
+	 * @return the number of moves made
+	 */
+	public long getMovesAccepted() {
+		return accepted;
+	}
+
+	/**
+	 * Returns the score of the plans given to the last run
+	 * @return the starting score
+	 */
+	public long getStartCost() {
+		return startCost;
+	}
+
+	/**
+	 * Returns the score of the plans returned by the last run, scored again from scratch
+	 * @return the final score
+	 */
+	public long getEndCost() {
+		return endCost;
+	}
+
+	/**
+	 * The state of one run: every flight's choices as arrays of ids, and who is busy when
+	 */
+	private static class Search {
+
+		private final ResourceRegistry registry;
+		private final ScheduleObjective objective;
+		private final Random random;
+
+		private final int n;
+		private final long[] dep;
+		private final long[] land;
+
+		//-1 where nobody is allocated, such flights' empty places are left alone
+		private final int[] aircraft;
+		private final int[] captain;
+		private final int[] firstOfficer;
+		private final int[][] cabin;
+
+		//the flights that have an aircraft, which are the only ones moves are made on
+		private final int[] movable;
+
+		private final int[] cabinRequired;//by aircraft
+		private final int[] captains;
+		private final int[] firstOfficers;
+
+		private final IntervalIndex aircraftBusy = new IntervalIndex();
+
+		//each aircraft's flights by departure minute, so the flights before and after a move can be found
+		private final List<NavigableMap<Long, Integer>> flown = new ArrayList<>();
+		private final IntervalIndex pilotsBusy = new IntervalIndex();
+		private final IntervalIndex cabinBusy = new IntervalIndex();
+
+		private long total;
+		private long tried;
+		private long accepted;
+		private double temperature = START_TEMPERATURE;
+
+		Search(ResourceRegistry registry, ScheduleObjective objective, List<FlightInfo> flights, FlightAllocator.Allocation[] plans, Random random) {
+
+			this.registry = registry;
+			this.objective = objective;
+			this.random = random;
+
+			n = plans.length;
+			dep = new long[n];
+			land = new long[n];
+			aircraft = new int[n];
+			captain = new int[n];
+			firstOfficer = new int[n];
+			cabin = new int[n][];
+
+			int[] withAircraft = new int[n];
+			int count = 0;
+
+			for(int a = 0; a < registry.aircraftCount(); a++)
+			{
+				flown.add(new TreeMap<>());
+			}
+
+			for(int i = 0; i < n; i++)
+			{
+				FlightAllocator.Allocation p = plans[i];
+				dep[i] = IntervalIndex.departure(flights.get(i));
+				land[i] = IntervalIndex.landing(flights.get(i));
+				aircraft[i] = p.aircraft;
+				captain[i] = p.captain;
+				firstOfficer[i] = p.firstOfficer;
+				cabin[i] = p.cabinCrew.clone();
+
+				if(p.aircraft != -1)
+				{
+					withAircraft[count++] = i;
+					aircraftBusy.add(p.aircraft, dep[i], land[i]);
+					flown.get(p.aircraft).put(dep[i], i);
+				}
+				for(int id : new int[] {p.captain, p.firstOfficer})
+				{
+					if(id != -1)
+					{
+						pilotsBusy.add(id, dep[i], land[i]);
+					}
+				}
+				for(int id : p.cabinCrew)
+				{
+					cabinBusy.add(id, dep[i], land[i]);
+				}
+			}
+			movable = Arrays.copyOf(withAircraft, count);
+
+			cabinRequired = new int[registry.aircraftCount()];
+
+			for(int a = 0; a < cabinRequired.length; a++)
+			{
+				cabinRequired[a] = registry.aircraft(a).getCabinCrewRequired();
+			}
+
+			captains = registry.pilotsOfRank(Pilot.Rank.CAPTAIN).stream().toArray();
+			firstOfficers = registry.pilotsOfRank(Pilot.Rank.FIRST_OFFICER).stream().toArray();
+
+			total = 0;
+
+			for(int i : movable)
+			{
+				total += flightCost(i, aircraft[i]);
+			}
+			for(int a = 0; a < flown.size(); a++)
+			{
+				total += positions(a, Long.MIN_VALUE, Long.MAX_VALUE);
+			}
+		}
+
+		void run(long moves, long deadline) {
+
+			if(movable.length == 0)
+			{
+				return;
+			}
+
+			double cooling = Math.pow(END_TEMPERATURE / START_TEMPERATURE, 1.0 / Math.max(moves, 1));
+
+			for(long k = 0; k < moves; k++)
+			{
+				if(k % CHECK_EVERY == 0)
+				{
+					if(System.nanoTime() - deadline >= 0)
+					{
+						break;
+					}
+					temperature = START_TEMPERATURE * Math.pow(cooling, k);
+				}
+
+				int i = movable[random.nextInt(movable.length)];
+				tried++;
+
+				switch(random.nextInt(4))
+				{
+				case 0:
+					reassignAircraft(i);
+					break;
+				case 1:
+					swapAircraft(i, near(i));
+					break;
+				case 2:
+					reassignCrew(i);
+					break;
+				default:
+					swapCrew(i, near(i));
+					break;
+				}
+			}
+		}
+
+		//a flight with an aircraft close to i in departure order, or -1
+		private int near(int i) {
+
+			int j = i + random.nextInt(2 * SWAP_WINDOW + 1) - SWAP_WINDOW;
+			return j < 0 || j >= n || j == i || aircraft[j] == -1 ? -1 : j;
+		}
+
+		private void reassignAircraft(int i) {
+
+			int a = aircraft[i];
+			int b = random.nextInt(cabinRequired.length);
+
+			if(b == a || cabinRequired[b] > cabin[i].length || ! aircraftBusy.isFree(b, dep[i], land[i]))
+			{
+				return;
+			}
+
+			//moved for scoring, and moved back if the move isn't made
+			long before = positions(a, dep[i], dep[i]) + positions(b, dep[i], dep[i]);
+			fly(i, a, b);
+			long after = positions(a, dep[i], dep[i]) + positions(b, dep[i], dep[i]);
+
+			if(accept(flightCost(i, b) - flightCost(i, a) + after - before))
+			{
+				aircraftBusy.remove(a, dep[i]);
+				aircraftBusy.add(b, dep[i], land[i]);
+				aircraft[i] = b;
+			}
+			else
+			{
+				fly(i, b, a);
+			}
+		}
+
+		private void swapAircraft(int i, int j) {
+
+			if(j == -1)
+			{
+				return;
+			}
+
+			int a = aircraft[i];
+			int b = aircraft[j];
+
+			if(a == b || cabinRequired[b] > cabin[i].length || cabinRequired[a] > cabin[j].length)
+			{
+				return;
+			}
+
+			//taken off both flights first, as either may be what's in the other's way
+			aircraftBusy.remove(a, dep[i]);
+			aircraftBusy.remove(b, dep[j]);
+
+			if(aircraftBusy.isFree(b, dep[i], land[i]) && aircraftBusy.isFree(a, dep[j], land[j]))
+			{
+				long from = Math.min(dep[i], dep[j]);
+				long to = Math.max(dep[i], dep[j]);
+
+				long before = positions(a, from, to) + positions(b, from, to);
+				fly(i, j, a, b);
+				long after = positions(a, from, to) + positions(b, from, to);
+
+				if(accept(flightCost(i, b) + flightCost(j, a) - flightCost(i, a) - flightCost(j, b) + after - before))
+				{
+					aircraft[i] = b;
+					aircraft[j] = a;
+				}
+				else
+				{
+					fly(i, j, b, a);
+				}
+			}
+			aircraftBusy.add(aircraft[i], dep[i], land[i]);
+			aircraftBusy.add(aircraft[j], dep[j], land[j]);
+		}
+
+		private void reassignCrew(int i) {
+
+			int slot = random.nextInt(2 + cabin[i].length);
+			int a = aircraft[i];
+
+			if(slot < 2)
+			{
+				int[] seat = slot == 0 ? captain : firstOfficer;
+				int[] pool = slot == 0 ? captains : firstOfficers;
+				int c = seat[i];
+
+				if(c == -1 || pool.length == 0)
+				{
+					return;
+				}
+
+				int d = pool[random.nextInt(pool.length)];
+
+				if(d != c && pilotsBusy.isFree(d, dep[i], land[i]) && accept(objective.pilotCost(i, a, d) - objective.pilotCost(i, a, c)))
+				{
+					pilotsBusy.remove(c, dep[i]);
+					pilotsBusy.add(d, dep[i], land[i]);
+					seat[i] = d;
+				}
+			}
+			else
+			{
+				int c = cabin[i][slot - 2];
+				int d = random.nextInt(registry.cabinCrewCount());
+
+				if(d != c && cabinBusy.isFree(d, dep[i], land[i]) && accept(objective.cabinCrewCost(i, a, d) - objective.cabinCrewCost(i, a, c)))
+				{
+					cabinBusy.remove(c, dep[i]);
+					cabinBusy.add(d, dep[i], land[i]);
+					cabin[i][slot - 2] = d;
+				}
+			}
+		}
+
+		private void swapCrew(int i, int j) {
+
+			if(j == -1)
+			{
+				return;
+			}
+
+			int slot = random.nextInt(2 + cabin[i].length);
+
+			if(slot < 2)
+			{
+				int[] seat = slot == 0 ? captain : firstOfficer;
+				int c = seat[i];
+				int d = seat[j];
+
+				if(c == -1 || d == -1 || c == d)
+				{
+					return;
+				}
+
+				pilotsBusy.remove(c, dep[i]);
+				pilotsBusy.remove(d, dep[j]);
+
+				boolean swap = pilotsBusy.isFree(d, dep[i], land[i]) && pilotsBusy.isFree(c, dep[j], land[j])
+						&& accept(objective.pilotCost(i, aircraft[i], d) + objective.pilotCost(j, aircraft[j], c)
+								- objective.pilotCost(i, aircraft[i], c) - objective.pilotCost(j, aircraft[j], d));
+
+				if(swap)
+				{
+					seat[i] = d;
+					seat[j] = c;
+				}
+				pilotsBusy.add(seat[i], dep[i], land[i]);
+				pilotsBusy.add(seat[j], dep[j], land[j]);
+			}
+			else if(cabin[j].length > 0)
+			{
+				int si = slot - 2;
+				int sj = random.nextInt(cabin[j].length);
+				int c = cabin[i][si];
+				int d = cabin[j][sj];
+
+				if(c == d)
+				{
+					return;
+				}
+
+				cabinBusy.remove(c, dep[i]);
+				cabinBusy.remove(d, dep[j]);
+
+				boolean swap = cabinBusy.isFree(d, dep[i], land[i]) && cabinBusy.isFree(c, dep[j], land[j])
+						&& accept(objective.cabinCrewCost(i, aircraft[i], d) + objective.cabinCrewCost(j, aircraft[j], c)
+								- objective.cabinCrewCost(i, aircraft[i], c) - objective.cabinCrewCost(j, aircraft[j], d));
+
+				if(swap)
+				{
+					cabin[i][si] = d;
+					cabin[j][sj] = c;
+				}
+				cabinBusy.add(cabin[i][si], dep[i], land[i]);
+				cabinBusy.add(cabin[j][sj], dep[j], land[j]);
+			}
+		}
+
+		//decides on a move by how much it changes the score, counting it in if it's made
+		private boolean accept(long delta) {
+
+			if(delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature))
+			{
+				total += delta;
+				accepted++;
+				return true;
+			}
+			return false;
+		}
+
+		//moves flight i from aircraft a's flights to b's
+		private void fly(int i, int a, int b) {
+			flown.get(a).remove(dep[i]);
+			flown.get(b).put(dep[i], i);
+		}
+
+		//gives flight i, flown by a, to b, and flight j, flown by b, to a; both are taken off first as they may depart together
+		private void fly(int i, int j, int a, int b) {
+			flown.get(a).remove(dep[i]);
+			flown.get(b).remove(dep[j]);
+			flown.get(b).put(dep[i], i);
+			flown.get(a).put(dep[j], j);
+		}
+
+		//the position costs of aircraft a's flights departing between from and to, and of its first flight after that,
+		//which are all that moving its flights between those times can change
+		private long positions(int a, long from, long to) {
+
+			NavigableMap<Long, Integer> flights = flown.get(a);
+			Map.Entry<Long, Integer> before = flights.lowerEntry(from);
+			int previous = before == null ? -1 : before.getValue();
+			long cost = 0;
+
+			for(int f : flights.tailMap(from, true).values())
+			{
+				cost += objective.positionCost(f, a, previous);
+
+				if(dep[f] > to)
+				{
+					break;
+				}
+				previous = f;
+			}
+			return cost;
+		}
+
+		//the cost of flight i's aircraft and crew if it had aircraft a
+		private long flightCost(int i, int a) {
+
+			long cost = objective.aircraftCost(i, a);
+
+			if(captain[i] != -1)
+			{
+				cost += objective.pilotCost(i, a, captain[i]);
+			}
+			if(firstOfficer[i] != -1)
+			{
+				cost += objective.pilotCost(i, a, firstOfficer[i]);
+			}
+			for(int c : cabin[i])
+			{
+				cost += objective.cabinCrewCost(i, a, c);
+			}
+			return cost;
+		}
+
+		//the current choices as plans
+		FlightAllocator.Allocation[] plans() {
+
+			FlightAllocator.Allocation[] plans = new FlightAllocator.Allocation[n];
+
+			for(int i = 0; i < n; i++)
+			{
+				FlightAllocator.Allocation p = new FlightAllocator.Allocation();
+				p.aircraft = aircraft[i];
+				p.captain = captain[i];
+				p.firstOfficer = firstOfficer[i];
+				p.cabinCrew = cabin[i].clone();
+				plans[i] = p;
+
+				if(aircraft[i] != -1)
+				{
+					Map.Entry<Long, Integer> previous = flown.get(aircraft[i]).lowerEntry(dep[i]);
+					p.cost = (int) (flightCost(i, aircraft[i]) + objective.positionCost(i, aircraft[i], previous == null ? -1 : previous.getValue()));
+				}
+			}
+			return plans;
+		}
+
+		//the total cost of the given plans, worked out from scratch
+		long score(FlightAllocator.Allocation[] plans) {
+
+			long score = 0;
+
+			//each aircraft's latest flight so far, the flights being in departure order
+			int[] previous = new int[registry.aircraftCount()];
+			Arrays.fill(previous, -1);
+
+			for(int i = 0; i < plans.length; i++)
+			{
+				FlightAllocator.Allocation p = plans[i];
+
+				if(p.aircraft == -1)
+				{
+					continue;
+				}
+
+				score += objective.aircraftCost(i, p.aircraft) + objective.positionCost(i, p.aircraft, previous[p.aircraft]);
+				previous[p.aircraft] = i;
+
+				for(int id : new int[] {p.captain, p.firstOfficer})
+				{
+					if(id != -1)
+					{
+						score += objective.pilotCost(i, p.aircraft, id);
+					}
+				}
+				for(int id : p.cabinCrew)
+				{
+					score += objective.cabinCrewCost(i, p.aircraft, id);
+				}
+			}
+			return score;
+		}
+	}
+
+}
@@ -0,0 +1,240 @@
+package solution;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive long keys to primitive int values, using open addressing with
+ * linear probing over two flat arrays, so entries cost 12 bytes and lookups never allocate
+ */
+public class LongIntHashMap {
+
+	//marks an empty slot; a real key with this value is kept in its own field instead
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final int MIN_CAPACITY = 16;
+	private static final int MAX_CAPACITY = 1 << 30;//the largest power of two an array can hold
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+	private int resizeAt;
+
+	private boolean hasEmptyKey;
+	private int emptyKeyValue;
+
+	/**
+	 * Creates an empty map
+	 */
+	public LongIntHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty map that can hold the given number of entries before it has to grow
+	 * @param expected the number of entries expected
+	 */
+	public LongIntHashMap(int expected) {
+		allocate(capacityFor(expected));
+	}
+
+	/**
+	 * Creates a map with the same entries as another
+	 * @param from the map to copy
+	 */
+	public LongIntHashMap(LongIntHashMap from) {
+		keys = from.keys.clone();
+		values = from.values.clone();
+		size = from.size;
+		mask = from.mask;
+		resizeAt = from.resizeAt;
+		hasEmptyKey = from.hasEmptyKey;
+		emptyKeyValue = from.emptyKeyValue;
+	}
+
+	/**
+	 * Associates the value with the key, replacing any value the key already had
+	 * @param key the key
+	 * @param value the value
+	 */
+	public void put(long key, int value) {
+
+		if(key == EMPTY)
+		{
+			if(! hasEmptyKey)
+			{
+				hasEmptyKey = true;
+				size++;
+			}
+			emptyKeyValue = value;
+			return;
+		}
+
+		int slot = slot(key);
+
+		while(keys[slot] != EMPTY)
+		{
+			if(keys[slot] == key)
+			{
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		//at the largest capacity the map fills up to all but one slot, which keeps probes for missing keys finite
+		if(size >= resizeAt && keys.length == MAX_CAPACITY)
+		{
+			throw new IllegalStateException("the map is full, it can't hold more than " + size + " entries");
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+
+		if(++size >= resizeAt && keys.length < MAX_CAPACITY)
+		{
+			rehash(keys.length * 2);
+		}
+	}
+
+	/**
+	 * Returns the value for the key, or the given default if the key isn't in the map
+	 * @param key the key
+	 * @param missing the value to return if the key isn't in the map
+	 * @return the key's value, or missing
+	 */
+	public int get(long key, int missing) {
+
+		if(key == EMPTY)
+		{
+			return hasEmptyKey ? emptyKeyValue : missing;
+		}
+
+		int slot = slot(key);
+		long k;
+
+		while((k = keys[slot]) != EMPTY)
+		{
+			if(k == key)
+			{
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return missing;
+	}
+
+	/**
+	 * Returns the number of entries in the map
+	 * @return the number of entries in the map
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every entry, shrinking the map back to its smallest size
+	 */
+	public void clear() {
+		size = 0;
+		hasEmptyKey = false;
+		allocate(MIN_CAPACITY);
+	}
+
+	/**
+	 * Passes every entry to the consumer, in no particular order
+	 * @param consumer what to pass them to
+	 */
+	public void forEach(EntryConsumer consumer) {
+
+		if(hasEmptyKey)
+		{
+			consumer.accept(EMPTY, emptyKeyValue);
+		}
+
+		for(int i = 0; i < keys.length; i++)
+		{
+			if(keys[i] != EMPTY)
+			{
+				consumer.accept(keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Receives the entries of a LongIntHashMap
+	 */
+	public interface EntryConsumer {
+
+		/**
+		 * @param key the entry's key
+		 * @param value the entry's value
+		 */
+		void accept(long key, int value);
+	}
+
+	/**
+	 * Makes room for the given number of entries in total without further resizing
+	 * @param expected the number of entries expected
+	 */
+	public void ensureCapacity(int expected) {
+
+		int capacity = capacityFor(expected);
+
+		if(capacity > keys.length)
+		{
+			rehash(capacity);
+		}
+	}
+
+	private int slot(long key) {
+
+		//the low bits of keys like (epochDay << 32 | flight) cluster, so mix them first (murmur3's finaliser)
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+
+	private void rehash(int capacity) {
+
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+
+		for(int i = 0; i < oldKeys.length; i++)
+		{
+			long key = oldKeys[i];
+
+			if(key != EMPTY)
+			{
+				int slot = slot(key);
+
+				while(keys[slot] != EMPTY)
+				{
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+		resizeAt = capacity == MAX_CAPACITY ? capacity - 1 : (int) (capacity * 0.75);
+	}
+
+	//the smallest power of two that keeps the map at most 3/4 full
+	private static int capacityFor(int expected) {
+
+		long needed = Math.max(MIN_CAPACITY, (long) Math.ceil(expected / 0.75) + 1);
+		return (int) Math.min(MAX_CAPACITY, Long.highestOneBit(needed - 1) << 1);
+	}
+
+}
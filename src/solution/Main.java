@@ -7,7 +7,6 @@ import java.time.LocalDate;
 import baseclasses.DataLoadingException;
 import baseclasses.IAircraftDAO;
 import baseclasses.ICrewDAO;
-import baseclasses.IPassengerNumbersDAO;
 import baseclasses.IRouteDAO;
 import baseclasses.IScheduler;
 
@@ -22,26 +21,38 @@ public class Main {
 		IAircraftDAO aircraft = new AircraftDAO();
 		ICrewDAO crew = new CrewDAO();
 		IRouteDAO route = new RouteDAO();
-		IPassengerNumbersDAO pass = new PassengerNumbersDAO();
+		PassengerNumbersDAO pass = new PassengerNumbersDAO();
 		IScheduler sched = new Scheduler();
+		DataLoader loader = new DataLoader();
+		
+		LocalDate startDate = LocalDate.parse("2021-07-01");
+		LocalDate endDate = LocalDate.parse("2021-08-31");
 		
 				
 		try {
 			
-			aircraft.loadAircraftData(Paths.get("./data/aircraft.csv"));
-			route.loadRouteData(Paths.get("./data/routes.xml"));
-			crew.loadCrewData(Paths.get("./data/crew.json"));
-			pass.loadPassengerNumbersData(Paths.get("./data/passengernumbers.db"));
+			//the four files are independent, so they are loaded at the same time
+			loader.addAircraft(aircraft, Paths.get("./data/aircraft.csv"));
+			loader.addRoutes(route, Paths.get("./data/routes.xml"));
+			loader.addCrew(crew, Paths.get("./data/crew.json"));
+			loader.addPassengerNumbers(pass, Paths.get("./data/passengernumbers.db"), startDate, endDate);//only the horizon being scheduled
+			loader.loadAll();
+			
 			
 			
+			System.out.println(sched.generateSchedule(aircraft, crew, route, pass, startDate, endDate));
 			
-			System.out.println(sched.generateSchedule(aircraft, crew, route, pass, LocalDate.parse("2021-07-01"), LocalDate.parse("2021-08-31")));
+			if(Metrics.isEnabled())//run with -Dsolution.metrics=true
+			{
+				System.out.print(loader);
+				System.out.print(Metrics.snapshot());
+			}
 			
 			
 			
 		}
 		catch (DataLoadingException |  NullPointerException dle) {
-			System.err.println("Error loading aircraft data");
+			System.err.println("Error loading data:" + loader.getFailures().keySet());
 			dle.printStackTrace();
 		}
 	}
@@ -0,0 +1,529 @@
+package solution;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics keeps the counters and latency histograms for loading data and scheduling, so it can be seen where
+ * the time goes. Recording is off unless the solution.metrics system property is true or setEnabled(true) is
+ * called, and while it is off every call here is just a check of a flag.
+ * Everything recorded can be read in process with snapshot(), or over JMX under the "solution" domain
+ * once registerMBeans() has been called, where recording can also be turned on and off
+ */
+public final class Metrics {
+
+	private static volatile boolean enabled = Boolean.getBoolean("solution.metrics");
+	private static volatile boolean registered;
+
+	private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+	private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+	private Metrics() {
+	}
+
+	/**
+	 * Returns whether metrics are being recorded
+	 * @return true if they are
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turns recording on or off, what has been recorded so far is kept either way
+	 * @param on true to record
+	 */
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	/**
+	 * Returns the counter with the given name, creating it the first time
+	 * @param name the name, dotted like "schedule.candidates"
+	 * @return the counter
+	 */
+	public static Counter counter(String name) {
+		return counters.computeIfAbsent(name, n -> register(new Counter(), "Counter", n));
+	}
+
+	/**
+	 * Returns the timer with the given name, creating it the first time
+	 * @param name the name, dotted like "load.aircraft"
+	 * @return the timer
+	 */
+	public static Timer timer(String name) {
+		return timers.computeIfAbsent(name, n -> register(new Timer(), "Timer", n));
+	}
+
+	/**
+	 * Starts timing something, to be finished with Timer.stop
+	 * @return the time now in nanoseconds, or 0 if metrics are off
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Sets every counter and timer back to zero
+	 */
+	public static void reset() {
+
+		for(Counter c : counters.values())
+		{
+			c.count.reset();
+		}
+
+		for(Timer t : timers.values())
+		{
+			t.reset();
+		}
+	}
+
+	/**
+	 * Copies what has been recorded so far, one metric at a time, so it is only consistent if nothing is running
+	 * @return the copy
+	 */
+	public static Snapshot snapshot() {
+
+		Map<String, Long> c = new TreeMap<>();
+		Map<String, TimerSnapshot> t = new TreeMap<>();
+
+		for(Map.Entry<String, Counter> e : counters.entrySet())
+		{
+			c.put(e.getKey(), e.getValue().getCount());
+		}
+
+		for(Map.Entry<String, Timer> e : timers.entrySet())
+		{
+			t.put(e.getKey(), e.getValue().snapshot());
+		}
+		return new Snapshot(c, t);
+	}
+
+	/**
+	 * Registers every counter and timer with the platform MBean server, as solution:type=Counter,name=...
+	 * and solution:type=Timer,name=..., along with solution:type=Metrics to turn recording on and off.
+	 * Metrics created later are registered as they are created
+	 * @throws JMException if they can't be registered
+	 */
+	public static synchronized void registerMBeans() throws JMException {
+
+		if(registered)
+		{
+			return;
+		}
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(new Control(), new ObjectName("solution:type=Metrics"));
+		registered = true;
+
+		for(Map.Entry<String, Counter> e : counters.entrySet())
+		{
+			server.registerMBean(e.getValue(), name("Counter", e.getKey()));
+		}
+
+		for(Map.Entry<String, Timer> e : timers.entrySet())
+		{
+			server.registerMBean(e.getValue(), name("Timer", e.getKey()));
+		}
+	}
+
+	private static <T> T register(T metric, String type, String name) {
+
+		if(registered)
+		{
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(metric, name(type, name));
+			} catch (JMException e) {
+				System.err.println("Error registering metric " + name + ":" + e);
+			}
+		}
+		return metric;
+	}
+
+	private static ObjectName name(String type, String name) throws JMException {
+		return new ObjectName("solution:type=" + type + ",name=" + ObjectName.quote(name));
+	}
+
+	/**
+	 * What a Counter shows over JMX
+	 */
+	public interface CounterMXBean {
+
+		/**
+		 * @return the count
+		 */
+		long getCount();
+	}
+
+	/**
+	 * What a Timer shows over JMX, in microseconds
+	 */
+	public interface TimerMXBean {
+
+		/**
+		 * @return the number of times recorded
+		 */
+		long getCount();
+
+		/**
+		 * @return the total of all the times
+		 */
+		long getTotalMicros();
+
+		/**
+		 * @return the average time
+		 */
+		double getMeanMicros();
+
+		/**
+		 * @return the longest time
+		 */
+		long getMaxMicros();
+
+		/**
+		 * @return the time half the times were under, to within a factor of 2
+		 */
+		long getMedianMicros();
+
+		/**
+		 * @return the time 99% of the times were under, to within a factor of 2
+		 */
+		long get99thPercentileMicros();
+	}
+
+	/**
+	 * What solution:type=Metrics shows over JMX
+	 */
+	public interface ControlMXBean {
+
+		/**
+		 * @return whether metrics are being recorded
+		 */
+		boolean isEnabled();
+
+		/**
+		 * @param on true to record
+		 */
+		void setEnabled(boolean on);
+
+		/**
+		 * Sets every counter and timer back to zero
+		 */
+		void reset();
+	}
+
+	private static class Control implements ControlMXBean {
+
+		@Override
+		public boolean isEnabled() {
+			return Metrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean on) {
+			Metrics.setEnabled(on);
+		}
+
+		@Override
+		public void reset() {
+			Metrics.reset();
+		}
+	}
+
+	/**
+	 * A count of something, safe to add to from any number of threads
+	 */
+	public static final class Counter implements CounterMXBean {
+
+		private final LongAdder count = new LongAdder();
+
+		private Counter() {
+		}
+
+		/**
+		 * Adds one, if metrics are on
+		 */
+		public void increment() {
+			if(enabled)
+			{
+				count.increment();
+			}
+		}
+
+		/**
+		 * Adds n, if metrics are on
+		 * @param n the amount to add
+		 */
+		public void add(long n) {
+			if(enabled)
+			{
+				count.add(n);
+			}
+		}
+
+		@Override
+		public long getCount() {
+			return count.sum();
+		}
+	}
+
+	/**
+	 * A histogram of how long something takes, in buckets of powers of 2 nanoseconds, safe to record from any number of threads
+	 */
+	public static final class Timer implements TimerMXBean {
+
+		private final AtomicLongArray buckets = new AtomicLongArray(64);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		private Timer() {
+		}
+
+		/**
+		 * Records the time since Metrics.start() was called
+		 * @param start what Metrics.start() returned, nothing is recorded if it was 0
+		 */
+		public void stop(long start) {
+			if(start != 0)
+			{
+				record(System.nanoTime() - start);
+			}
+		}
+
+		/**
+		 * Records a time, if metrics are on
+		 * @param nanos the time in nanoseconds
+		 */
+		public void record(long nanos) {
+
+			if(! enabled)
+			{
+				return;
+			}
+
+			nanos = Math.max(nanos, 0);
+			buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+			count.increment();
+			total.add(nanos);
+			max.accumulate(nanos);
+		}
+
+		private void reset() {
+
+			for(int i = 0; i < buckets.length(); i++)
+			{
+				buckets.set(i, 0);
+			}
+			count.reset();
+			total.reset();
+			max.reset();
+		}
+
+		private TimerSnapshot snapshot() {
+
+			long[] b = new long[buckets.length()];
+
+			for(int i = 0; i < b.length; i++)
+			{
+				b[i] = buckets.get(i);
+			}
+			return new TimerSnapshot(count.sum(), total.sum(), max.get(), b);
+		}
+
+		@Override
+		public long getCount() {
+			return count.sum();
+		}
+
+		@Override
+		public long getTotalMicros() {
+			return total.sum() / 1000;
+		}
+
+		@Override
+		public double getMeanMicros() {
+			return snapshot().getMeanNanos() / 1000;
+		}
+
+		@Override
+		public long getMaxMicros() {
+			return max.get() / 1000;
+		}
+
+		@Override
+		public long getMedianMicros() {
+			return snapshot().percentileNanos(0.5) / 1000;
+		}
+
+		@Override
+		public long get99thPercentileMicros() {
+			return snapshot().percentileNanos(0.99) / 1000;
+		}
+	}
+
+	/**
+	 * A copy of a Timer
+	 */
+	public static final class TimerSnapshot {
+
+		private final long count;
+		private final long totalNanos;
+		private final long maxNanos;
+		private final long[] buckets;
+
+		private TimerSnapshot(long count, long totalNanos, long maxNanos, long[] buckets) {
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.buckets = buckets;
+		}
+
+		/**
+		 * Returns the number of times recorded
+		 * @return the count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the total of all the times
+		 * @return the total in nanoseconds
+		 */
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		/**
+		 * Returns the longest time
+		 * @return the longest in nanoseconds
+		 */
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+
+		/**
+		 * Returns the average time
+		 * @return the average in nanoseconds, or 0 if nothing was recorded
+		 */
+		public double getMeanNanos() {
+			return count == 0 ? 0 : (double) totalNanos / count;
+		}
+
+		/**
+		 * Returns the time a fraction of the times were under, as the top of the bucket it falls in, so to within a factor of 2
+		 * @param q the fraction, from 0 to 1
+		 * @return the time in nanoseconds, never more than the longest, or 0 if nothing was recorded
+		 */
+		public long percentileNanos(double q) {
+
+			long rank = (long) Math.ceil(q * count);
+			long seen = 0;
+
+			for(int i = 0; i < buckets.length; i++)
+			{
+				seen += buckets[i];
+
+				if(seen >= rank && seen > 0)
+				{
+					return i == 63 ? maxNanos : Math.min((2L << i) - 1, maxNanos);
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * A copy of every counter and timer, by name
+	 */
+	public static final class Snapshot {
+
+		private final Map<String, Long> counters;
+		private final Map<String, TimerSnapshot> timers;
+
+		private Snapshot(Map<String, Long> counters, Map<String, TimerSnapshot> timers) {
+			this.counters = Collections.unmodifiableMap(counters);
+			this.timers = Collections.unmodifiableMap(timers);
+		}
+
+		/**
+		 * Returns the counters
+		 * @return each counter's count by name, in name order
+		 */
+		public Map<String, Long> getCounters() {
+			return counters;
+		}
+
+		/**
+		 * Returns the timers
+		 * @return each timer by name, in name order
+		 */
+		public Map<String, TimerSnapshot> getTimers() {
+			return timers;
+		}
+
+		/**
+		 * Returns a counter's count
+		 * @param name the counter's name
+		 * @return the count, or 0 if there is no such counter
+		 */
+		public long count(String name) {
+			return counters.getOrDefault(name, 0L);
+		}
+
+		/**
+		 * Lists every timer that has recorded anything then every counter that isn't 0, one to a line.
+		 * A timer with a name.rows counter also shows rows per second
+		 * @return the report
+		 */
+		@Override
+		public String toString() {
+
+			StringBuilder sb = new StringBuilder();
+
+			for(Map.Entry<String, TimerSnapshot> e : timers.entrySet())
+			{
+				TimerSnapshot t = e.getValue();
+
+				if(t.count == 0)
+				{
+					continue;
+				}
+
+				sb.append(String.format("%-36s n=%d total=%.1fms mean=%.1fus p50=%dus p99=%dus max=%dus",
+						e.getKey(), t.count, t.totalNanos / 1e6, t.getMeanNanos() / 1e3,
+						t.percentileNanos(0.5) / 1000, t.percentileNanos(0.99) / 1000, t.maxNanos / 1000));
+
+				Long rows = counters.get(e.getKey() + ".rows");
+
+				if(rows != null && t.totalNanos > 0)
+				{
+					sb.append(String.format(" rows/s=%.0f", rows * 1e9 / t.totalNanos));
+				}
+				sb.append('\n');
+			}
+
+			for(Map.Entry<String, Long> e : counters.entrySet())
+			{
+				if(e.getValue() != 0)
+				{
+					sb.append(String.format("%-36s %d%n", e.getKey(), e.getValue()));
+				}
+			}
+			return sb.toString();
+		}
+	}
+
+}
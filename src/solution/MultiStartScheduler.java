@@ -0,0 +1,268 @@
+package solution;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.IScheduler;
+import baseclasses.Schedule;
+
+/**
+ * The MultiStartScheduler makes several schedules at once, one per core, and returns the best: the one with the
+ * most flights completed, then the lowest score from its ScheduleObjective. The first start makes the same schedule
+ * as the Scheduler and the others vary their choices like the AnytimeScheduler's rounds, each from its own seed,
+ * so the same seed, starts and data always give the same result however the starts are spread over the threads.
+ * It can stop early once a schedule completes every flight with a score no higher than a target
+ */
+public class MultiStartScheduler implements IScheduler {
+
+	public static final int DEFAULT_STARTS = 16;
+
+	private final int starts;
+	private final long seed;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private ScheduleObjective.Factory objective = StandardObjective::new;
+	private long target = -1;
+
+	//about the last run
+	private int finished;
+	private int bestStart;
+	private long bestScore;
+
+	/**
+	 * Creates a scheduler that makes DEFAULT_STARTS schedules from seed 0
+	 */
+	public MultiStartScheduler() {
+		this(DEFAULT_STARTS, 0);
+	}
+
+	/**
+	 * Creates a scheduler that makes the given number of schedules
+	 * @param starts the number of schedules to make, including the Scheduler's own
+	 * @param seed start i varies its choices from seed + i
+	 */
+	public MultiStartScheduler(int starts, long seed) {
+
+		if(starts < 1)
+		{
+			throw new IllegalArgumentException("there must be at least 1 start, not " + starts);
+		}
+		this.starts = starts;
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets how many schedules are made at once, by default one per available processor
+	 * @param parallelism the number of threads
+	 */
+	public void setParallelism(int parallelism) {
+
+		if(parallelism < 1)
+		{
+			throw new IllegalArgumentException("parallelism must be at least 1, not " + parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Sets what the schedules are scored by, by default the StandardObjective
+	 * @param objective creates the objective for each horizon scheduled
+	 */
+	public void setObjective(ScheduleObjective.Factory objective) {
+		this.objective = objective;
+	}
+
+	/**
+	 * Stops early once a schedule completes every flight with a score no higher than the target, rather than
+	 * making all the schedules. Starts after that one are dropped, but the ones before it are still finished,
+	 * so the result is still the same on every run
+	 * @param target the score to stop at, or -1 to always make every schedule
+	 */
+	public void setTargetScore(long target) {
+		this.target = target;
+	}
+
+	/**
+	 * Returns the number of schedules the last call to generateSchedule finished
+	 * @return the number of starts finished
+	 */
+	public int getFinished() {
+		return finished;
+	}
+
+	/**
+	 * Returns which start made the schedule returned by the last call to generateSchedule, 0 being the Scheduler's own
+	 * @return the best start
+	 */
+	public int getBestStart() {
+		return bestStart;
+	}
+
+	/**
+	 * Returns the objective's score of the schedule returned by the last call to generateSchedule
+	 * @return the best score
+	 */
+	public long getBestScore() {
+		return bestScore;
+	}
+
+	/**
+	 * Generates every start's schedule, in parallel, and returns the best
+	 * @param aircraftDAO the DAO for the aircraft to be used when scheduling
+	 * @param crewDAO the DAO for the crew to be used when scheduling
+	 * @param routeDAO the DAO to use for routes when scheduling
+	 * @param passengerNumbersDAO the DAO to use for passenger numbers when scheduling
+	 * @param startDate the start of the scheduling horizon
+	 * @param endDate the end of the scheduling horizon
+	 * @return the best schedule
+	 */
+	@Override
+	public Schedule generateSchedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO,
+			IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate) {
+
+		ResourceRegistry registry = new ResourceRegistry(aircraftDAO, crewDAO);
+
+		//the forecasts are the same for every start, so they are fetched once and shared
+		List<FlightInfo> flights = new Schedule(routeDAO, startDate, endDate).getRemainingAllocations();
+		int[] pass = Scheduler.passengersFor(flights, passengerNumbersDAO, startDate, endDate);
+
+		//the lowest start to have reached the target, the ones after it needn't run
+		AtomicInteger stopAfter = new AtomicInteger(Integer.MAX_VALUE);
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, starts));
+		List<Future<Result>> results = new ArrayList<>();
+
+		try {
+			for(int i = 0; i < starts; i++)
+			{
+				int start = i;
+				results.add(pool.submit(() -> run(start, registry, routeDAO, startDate, endDate, pass, stopAfter)));
+			}
+
+			Result best = null;
+			finished = 0;
+
+			for(Future<Result> f : results)
+			{
+				Result r = f.get();
+
+				if(r == null || r.start > stopAfter.get())
+				{
+					continue;
+				}
+				finished++;
+
+				//ties go to the lower start, so the result doesn't depend on which finished first
+				if(best == null || r.completed > best.completed || (r.completed == best.completed && r.score < best.score))
+				{
+					best = r;
+				}
+			}
+
+			bestStart = best.start;
+			bestScore = best.score;
+			return best.schedule;
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while scheduling", ie);
+		}
+		catch (ExecutionException ee) {
+			throw new IllegalStateException("a start failed", ee.getCause());
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	//one start's schedule, or null if it was dropped because an earlier start reached the target
+	private Result run(int start, ResourceRegistry registry, IRouteDAO routeDAO, LocalDate startDate, LocalDate endDate,
+			int[] pass, AtomicInteger stopAfter) {
+
+		Schedule s = new Schedule(routeDAO, startDate, endDate);
+		List<FlightInfo> flights = s.getRemainingAllocations();
+		FlightAllocator allocator = new FlightAllocator(registry);
+
+		//each start has its own objective, so one that keeps state as it scores needn't be thread safe
+		ScheduleObjective scorer = objective.create(registry, flights, pass);
+
+		if(start > 0)
+		{
+			allocator.setRandom(new Random(seed + start), AnytimeScheduler.RATES[start % AnytimeScheduler.RATES.length]);
+		}
+
+		Result r = new Result(start, s);
+
+		//each aircraft's latest flight so far, for the objective's position cost
+		int[] previous = new int[registry.aircraftCount()];
+		Arrays.fill(previous, -1);
+
+		for(int i = 0; i < flights.size(); i++)
+		{
+			if(start > stopAfter.get())
+			{
+				return null;
+			}
+
+			FlightAllocator.Allocation plan = allocator.plan(flights.get(i), pass[i], s);
+
+			//only the first start says why flights couldn't be completed, the others would just repeat it
+			if(Scheduler.complete(s, flights.get(i), plan, allocator, start == 0))
+			{
+				r.completed++;
+				r.score += score(scorer, i, plan, previous[plan.aircraft]);
+			}
+			if(plan.aircraft != -1)
+			{
+				previous[plan.aircraft] = i;//booked, complete or not
+			}
+		}
+
+		if(target >= 0 && r.completed == flights.size() && r.score <= target)
+		{
+			stopAfter.accumulateAndGet(start, Math::min);
+		}
+		return r;
+	}
+
+	private static long score(ScheduleObjective scorer, int flight, FlightAllocator.Allocation plan, int previous) {
+
+		long score = scorer.aircraftCost(flight, plan.aircraft)
+				+ scorer.positionCost(flight, plan.aircraft, previous)
+				+ scorer.pilotCost(flight, plan.aircraft, plan.captain)
+				+ scorer.pilotCost(flight, plan.aircraft, plan.firstOfficer);
+
+		for(int id : plan.cabinCrew)
+		{
+			score += scorer.cabinCrewCost(flight, plan.aircraft, id);
+		}
+		return score;
+	}
+
+	//how one start did
+	private static class Result {
+		final int start;
+		final Schedule schedule;
+		int completed;
+		long score;
+
+		Result(int start, Schedule schedule) {
+			this.start = start;
+			this.schedule = schedule;
+		}
+	}
+
+}
@@ -0,0 +1,345 @@
+package solution;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import baseclasses.DataLoadingException;
+import baseclasses.IPassengerNumbersDAO;
+
+/**
+ * The OnDemandPassengerNumbersDAO answers the same questions as the PassengerNumbersDAO but leaves
+ * the forecasts in their SQLite databases, looking each one up with an indexed point query the first
+ * time it is asked for and keeping the most recently used answers in a bounded cache.
+ * The databases are opened read-only and attached to one connection, which SQLite limits to MAX_DATABASES.
+ * Use it when a run only needs a small part of a large forecast database
+ */
+public class OnDemandPassengerNumbersDAO implements IPassengerNumbersDAO, Closeable {
+
+	public static final int DEFAULT_CACHE_SIZE = 1 << 16;
+
+	//SQLite's default limit on the number of databases attached to one connection
+	public static final int MAX_DATABASES = 10;
+
+	//SQLITE_OPEN_READWRITE | SQLITE_OPEN_CREATE | SQLITE_OPEN_URI, so databases can be attached with ?mode=ro
+	private static final int OPEN_MODE = 0x02 | 0x04 | 0x40;
+
+	//what prefetching and lookups record in Metrics, a miss is a lookup that had to go to the databases
+	private static final Metrics.Timer PREFETCH = Metrics.timer("load.passengers.prefetch");
+	private static final Metrics.Counter PREFETCH_ROWS = Metrics.counter("load.passengers.prefetch.rows");
+	private static final Metrics.Timer QUERY = Metrics.timer("query.passengers.onDemand");
+	private static final Metrics.Counter MISSES = Metrics.counter("query.passengers.onDemand.misses");
+	private static final Metrics.Counter ERRORS = Metrics.counter("query.passengers.onDemand.errors");
+
+	private final int cacheSize;
+	private final Map<Long, Integer> cache;
+
+	//every loaded database is attached to one in-memory connection as src0, src1, ... in load order
+	private Connection connection;
+	private final List<PreparedStatement> lookups = new ArrayList<>();
+
+	/**
+	 * Creates a DAO that caches up to DEFAULT_CACHE_SIZE forecasts
+	 */
+	public OnDemandPassengerNumbersDAO() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Creates a DAO that caches up to the given number of forecasts
+	 * @param cacheSize the most forecasts to keep in memory, least recently used are dropped first
+	 */
+	public OnDemandPassengerNumbersDAO(int cacheSize) {
+
+		this.cacheSize = cacheSize;
+		this.cache = new LinkedHashMap<Long, Integer>(Math.min(cacheSize, 1 << 12), 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+				return size() > OnDemandPassengerNumbersDAO.this.cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Opens the specified SQLite database read-only for future calls to getPassengerNumbersFor(), without reading its rows
+	 * Multiple calls to this method are additive, a database loaded later takes priority for flight numbers/dates in both
+	 * Lookups are only fast if the database has an index on (Date, FlightNumber), see createIndex(), so a warning
+	 * is printed if it doesn't
+	 * At most MAX_DATABASES databases can be loaded until the DAO is reset
+	 * @param p The path of the SQLite database to load data from
+	 * @throws DataLoadingException If there is a problem opening the database, or MAX_DATABASES are already loaded
+	 */
+	@Override
+	public synchronized void loadPassengerNumbersData(Path p) throws DataLoadingException {
+
+		if(lookups.size() >= MAX_DATABASES)
+		{
+			throw new DataLoadingException(new IllegalStateException("at most " + MAX_DATABASES + " passenger numbers databases can be loaded at once"));
+		}
+
+		String schema = "src" + lookups.size();
+		boolean attached = false;
+
+		try {
+			if(connection == null)
+			{
+				Properties config = new Properties();
+				config.setProperty("open_mode", Integer.toString(OPEN_MODE));
+				connection = DriverManager.getConnection("jdbc:sqlite::memory:", config);
+			}
+
+			//read-only, so loading never changes the database or its modification time
+			try (PreparedStatement attach = connection.prepareStatement("ATTACH DATABASE ? AS " + schema)) {
+				attach.setString(1, p.toUri() + "?mode=ro");
+				attach.execute();
+				attached = true;
+			}
+
+			//preparing the lookup also checks the table is there
+			lookups.add(connection.prepareStatement("SELECT LoadEstimate FROM " + schema + ".PassengerNumbers WHERE Date = ? AND FlightNumber = ?"));
+
+			if(! indexed(schema))
+			{
+				System.err.println("Warning: " + p + " has no index on PassengerNumbers(Date, FlightNumber), so every lookup scans the table");
+			}
+		}
+		catch (SQLException | NullPointerException e) {
+			if(attached)
+			{
+				detach(schema);
+			}
+			throw new DataLoadingException(e);
+		}
+
+		cache.clear();//anything cached may now be overridden by the new database
+	}
+
+	/**
+	 * Loads every forecast between the two dates (inclusive) into the cache with one query per database,
+	 * so a scheduler working through that range doesn't have to look each flight up separately
+	 * Only as many forecasts as fit in the cache are kept
+	 * @param startDate the first date to load
+	 * @param endDate the last date to load
+	 * @throws DataLoadingException If there is a problem reading from the database
+	 */
+	public synchronized void prefetch(LocalDate startDate, LocalDate endDate) throws DataLoadingException {
+
+		long t = Metrics.start();
+		int rows = 0;
+
+		//oldest database first so later ones overwrite it, as they would with the PassengerNumbersDAO
+		for(int i = 0; i < lookups.size(); i++)
+		{
+			try (PreparedStatement s = connection.prepareStatement("SELECT Date, FlightNumber, LoadEstimate FROM src" + i + ".PassengerNumbers WHERE Date BETWEEN ? AND ?")) {
+
+				s.setString(1, startDate.toString());
+				s.setString(2, endDate.toString());
+
+				try (ResultSet rs = s.executeQuery()) {
+					while(rs.next())
+					{
+						cache.put(PassengerNumbersDAO.key(rs.getInt(2), PassengerNumbersDAO.epochDay(rs.getString(1))), rs.getInt(3));
+						rows++;
+					}
+				}
+			}
+			catch (Exception e) {
+				throw new DataLoadingException(e);
+			}
+		}
+		PREFETCH_ROWS.add(rows);
+		PREFETCH.stop(t);
+	}
+
+	/**
+	 * Returns the number of distinct flight number/date forecasts across all the loaded databases
+	 * @return the number of passenger number entries available
+	 */
+	@Override
+	public synchronized int getNumberOfEntries() {
+
+		if(lookups.isEmpty())
+		{
+			return 0;
+		}
+
+		//distinct even with one database, as a table can hold more than one row for a flight and date
+		StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM (SELECT DISTINCT Date, FlightNumber FROM (");
+
+		for(int i = 0; i < lookups.size(); i++)
+		{
+			sql.append(i == 0 ? "" : " UNION ALL ").append("SELECT Date, FlightNumber FROM src").append(i).append(".PassengerNumbers");
+		}
+		sql.append("))");
+
+		try (Statement s = connection.createStatement(); ResultSet rs = s.executeQuery(sql.toString())) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+		catch (SQLException e) {
+			System.err.println("Error counting passenger numbers:" + e);
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns the predicted number of passengers for a given flight on a given date, or -1 if no data available
+	 * @param flightNumber The flight number of the flight to check for
+	 * @param date the date of the flight to check for
+	 * @return the predicted number of passengers, or -1 if no data available
+	 */
+	@Override
+	public synchronized int getPassengerNumbersFor(int flightNumber, LocalDate date) {
+
+		long t = Metrics.start();
+		long key = PassengerNumbersDAO.key(flightNumber, date.toEpochDay());
+		Integer cached = cache.get(key);
+
+		if(cached != null)
+		{
+			QUERY.stop(t);
+			return cached;
+		}
+
+		MISSES.increment();
+		int found = -1;
+
+		try {
+			//newest database first, the first one with an answer wins
+			for(int i = lookups.size() - 1; i >= 0 && found == -1; i--)
+			{
+				PreparedStatement s = lookups.get(i);
+				s.setString(1, date.toString());
+				s.setInt(2, flightNumber);
+
+				try (ResultSet rs = s.executeQuery()) {
+					if(rs.next())
+					{
+						found = rs.getInt(1);
+					}
+				}
+			}
+		}
+		catch (SQLException e) {
+			System.err.println("Error looking up passenger numbers:" + e);
+			ERRORS.increment();
+			return -1;
+		}
+
+		cache.put(key, found);//misses are cached too
+		QUERY.stop(t);
+		return found;
+	}
+
+	/**
+	 * Adds an index on (Date, FlightNumber) to a passenger numbers database if it doesn't have one, so the point
+	 * lookups this DAO makes don't scan the whole table. This writes to the database, so it is a separate step
+	 * for whoever owns the file rather than something loading does
+	 * @param p The path of the SQLite database
+	 * @throws SQLException If the database can't be opened or written to
+	 */
+	public static void createIndex(Path p) throws SQLException {
+
+		try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + p); Statement s = c.createStatement()) {
+			s.execute("CREATE INDEX IF NOT EXISTS PassengerNumbersByDateAndFlight ON PassengerNumbers(Date, FlightNumber)");
+		}
+	}
+
+	//whether the attached database has an index whose first two columns are Date and FlightNumber, in either order,
+	//which is all the point lookups need
+	private boolean indexed(String schema) throws SQLException {
+
+		List<String> indexes = new ArrayList<>();
+
+		try (Statement s = connection.createStatement(); ResultSet rs = s.executeQuery("PRAGMA " + schema + ".index_list(PassengerNumbers)")) {
+			while(rs.next())
+			{
+				indexes.add(rs.getString("name"));
+			}
+		}
+
+		for(String index : indexes)
+		{
+			Set<String> leading = new HashSet<>();
+
+			try (Statement s = connection.createStatement();
+					ResultSet rs = s.executeQuery("PRAGMA " + schema + ".index_info(\"" + index.replace("\"", "\"\"") + "\")")) {
+				while(rs.next())
+				{
+					if(rs.getInt("seqno") < 2 && rs.getString("name") != null)
+					{
+						leading.add(rs.getString("name").toLowerCase());
+					}
+				}
+			}
+
+			if(leading.size() == 2 && leading.contains("date") && leading.contains("flightnumber"))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void detach(String schema) {
+
+		try (Statement s = connection.createStatement()) {
+			s.execute("DETACH DATABASE " + schema);
+		}
+		catch (SQLException e) {
+			System.err.println("Error detaching passenger numbers database:" + e);
+		}
+	}
+
+	/**
+	 * Returns the most forecasts this DAO will keep in memory
+	 * @return the size of the cache
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * Closes all of the databases and empties the cache, ready to start again if needed
+	 */
+	@Override
+	public synchronized void reset() {
+		close();
+	}
+
+	/**
+	 * Closes all of the databases and empties the cache
+	 */
+	@Override
+	public synchronized void close() {
+
+		cache.clear();
+		lookups.clear();
+
+		if(connection != null)
+		{
+			try {
+				connection.close();
+			}
+			catch (SQLException e) {
+				System.err.println("Error closing passenger numbers database:" + e);
+			}
+			connection = null;
+		}
+	}
+
+}
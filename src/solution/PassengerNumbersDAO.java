@@ -1,16 +1,14 @@
 package solution;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-
+import java.time.Month;
 
 import baseclasses.DataLoadingException;
 import baseclasses.IPassengerNumbersDAO;
@@ -23,7 +21,18 @@ public class PassengerNumbersDAO implements IPassengerNumbersDAO {
 	
 	
 	
-	 HashMap<String, Integer> passenHash = new HashMap<String, Integer>();
+	private static final int FETCH_SIZE = 4096;
+	private static final long DAYS_0000_TO_1970 = 719528L;
+	
+	//what loading and lookups record in Metrics
+	private static final Metrics.Timer LOAD = Metrics.timer("load.passengers");
+	private static final Metrics.Counter LOAD_ROWS = Metrics.counter("load.passengers.rows");
+	private static final Metrics.Counter LOAD_BYTES = Metrics.counter("load.passengers.bytes");
+	private static final Metrics.Timer QUERY = Metrics.timer("query.passengers");
+	
+	//forecasts keyed by key(flightNumber, date), with no per-entry objects
+	//replaced as a whole by each load or reset, and never changed once it has been, so lookups need no locking
+	private volatile LongIntHashMap passengers = new LongIntHashMap();
 
 	/**
 	 * Loads the passenger numbers data from the specified SQLite database into a cache for future calls to getPassengerNumbersFor()
@@ -34,43 +43,129 @@ public class PassengerNumbersDAO implements IPassengerNumbersDAO {
 	 */
 	@Override
 	public void loadPassengerNumbersData(Path p) throws DataLoadingException {
-		// TODO Auto-generated method stub
-		Connection c = null;
+		load(p, null, null);
+	}
 	
-		try {
-			c = DriverManager.getConnection("jdbc:sqlite:"+p);
-		}
-		catch (Exception e) {
-			throw new DataLoadingException(e);
+	/**
+	 * Loads only the passenger numbers for flights between the two dates (inclusive) from the specified SQLite database,
+	 * for when only that part of the forecasts will be asked for, e.g. a scheduling horizon
+	 * Multiple calls to this method are additive, but flight numbers/dates previously cached will be overwritten
+	 * @param p The path of the SQLite database to load data from
+	 * @param startDate the first date to load
+	 * @param endDate the last date to load
+	 * @throws DataLoadingException If there is a problem loading from the database
+	 */
+	public void loadPassengerNumbersData(Path p, LocalDate startDate, LocalDate endDate) throws DataLoadingException {
+		
+		if(startDate == null || endDate == null)
+		{
+			throw new DataLoadingException(new NullPointerException("startDate and endDate are required"));
 		}
+		load(p, startDate, endDate);
+	}
+	
+	private void load(Path p, LocalDate startDate, LocalDate endDate) throws DataLoadingException {
 		
-		try {
-				Statement s = c.createStatement();
-				ResultSet rs = s.executeQuery("SELECT * FROM PassengerNumbers");
-		  
+		//only the three columns we use, and only the dates asked for; ISO dates sort as text so BETWEEN works
+		String sql = "SELECT Date, FlightNumber, LoadEstimate FROM PassengerNumbers" + (startDate == null ? "" : " WHERE Date BETWEEN ? AND ?");
+		long t = Metrics.start();
+		int rows = 0;
+		LongIntHashMap loaded = new LongIntHashMap();
+		
+		try (Connection c = DriverManager.getConnection("jdbc:sqlite:"+p);
+				PreparedStatement s = c.prepareStatement(sql)) {
+			
+			if(startDate != null)
+			{
+				s.setString(1, startDate.toString());
+				s.setString(2, endDate.toString());
+			}
+			s.setFetchSize(FETCH_SIZE);
+			
+			try (ResultSet rs = s.executeQuery()) {
 				
 				while(rs.next()) {
-	
 					
-					LocalDate dates = LocalDate.parse(rs.getString("Date"));			
-					DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-					String keys = dates.format(formatter).toString()+rs.getString("FlightNumber");	
-				
-					passenHash.put(keys, rs.getInt("LoadEstimate"));
-					 
-								}
-		} catch (SQLException e) {
+					loaded.put(key(rs.getInt(2), epochDay(rs.getString(1))), rs.getInt(3));
+					rows++;
+				}
+			}
+			
+			if(Metrics.isEnabled())
+			{
+				LOAD_BYTES.add(Files.size(p));
+			}
+		}
+		catch (Exception e) {
 			throw new DataLoadingException(e);
 		}
-	} 
+		finally
+		{
+			//whatever was read before a problem is still added
+			putAll(loaded);
+			LOAD_ROWS.add(rows);
+			LOAD.stop(t);
+		}
+	}
+	
+	/**
+	 * Converts an ISO date (yyyy-MM-dd) straight to a count of days since 1970-01-01 without creating a LocalDate
+	 * Anything not in exactly that shape is handed to LocalDate.parse, so bad dates fail just as they would there
+	 * @param date the date text
+	 * @return the epoch day
+	 */
+	static long epochDay(String date) {
+		
+		if(date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-')
+		{
+			return LocalDate.parse(date).toEpochDay();
+		}
+		
+		int y = digits(date, 0, 4);
+		int m = digits(date, 5, 7);
+		int d = digits(date, 8, 10);
+		boolean leap = (y & 3) == 0 && (y % 100 != 0 || y % 400 == 0);
+		
+		if(y < 0 || m < 1 || m > 12 || d < 1 || d > Month.of(m).length(leap))
+		{
+			return LocalDate.parse(date).toEpochDay();
+		}
+		
+		//the same arithmetic as LocalDate.toEpochDay(), for years 0 to 9999
+		long total = 365L * y + (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400 + (367 * m - 362) / 12 + d - 1;
+		
+		if(m > 2)
+		{
+			total -= leap ? 1 : 2;
+		}
+		return total - DAYS_0000_TO_1970;
+	}
+	
+	//the decimal value of the characters from start to end, or -1 if any aren't ASCII digits
+	private static int digits(String s, int start, int end) {
+		
+		int value = 0;
+		
+		for(int i = start; i < end; i++)
+		{
+			char ch = s.charAt(i);
+			
+			if(ch < '0' || ch > '9')
+			{
+				return -1;
+			}
+			value = value * 10 + (ch - '0');
+		}
+		return value;
+	}
+	
 	/**
 	 * Returns the number of passenger number entries in the cache
 	 * @return the number of passenger number entries in the cache
 	 */
 	@Override
 	public int getNumberOfEntries() {
-		// TODO Auto-generated method stub
-		return passenHash.size();
+		return passengers.size();
 	}
 
 	/**
@@ -82,28 +177,58 @@ public class PassengerNumbersDAO implements IPassengerNumbersDAO {
 	@Override
 	public int getPassengerNumbersFor(int flightNumber, LocalDate date) {
 		
-
-//		for(String h : passenHash.keySet())
-//		{
-//			if(h == date.toString()+Integer.toString(flightNumber))
-//			{
-//				return passenHash.get(h);
-//			}
-//		}
-		
-		if (passenHash.get(date.toString()+flightNumber) != null)
-			return passenHash.get(date.toString()+flightNumber);
+		long t = Metrics.start();
+		int found = passengers.get(key(flightNumber, date.toEpochDay()), -1);
 		
-		return -1;
+		QUERY.stop(t);
+		return found;
+	}
+	
+	/**
+	 * Packs a flight number and a date into the single long used as the cache key
+	 * @param flightNumber the flight number, in the low 32 bits
+	 * @param epochDay the date as a count of days since 1970-01-01, in the high 32 bits
+	 * @return the cache key
+	 */
+	static long key(int flightNumber, long epochDay) {
+		return (epochDay << 32) | (flightNumber & 0xFFFFFFFFL);
 	}
 
 	/**
 	 * Removes all data from the DAO, ready to start again if needed
 	 */
 	@Override
-	public void reset() {
+	public synchronized void reset() {
+	
+		passengers = new LongIntHashMap();
+	}
+	
+	/**
+	 * Adds forecasts, by copying those loaded, adding to the copy and then replacing them, so lookups see all of them or none
+	 * Loads are serialised with each other, but never with lookups
+	 * When nothing is loaded yet the map is published as it is, so it must not be changed afterwards
+	 * @param added the forecasts by key(flightNumber, epochDay), overwriting any already loaded
+	 */
+	synchronized void putAll(LongIntHashMap added) {
+		
+		if(passengers.size() == 0)
+		{
+			passengers = added;
+			return;
+		}
+		
+		LongIntHashMap next = new LongIntHashMap(passengers);
+		next.ensureCapacity(next.size() + added.size());
+		added.forEach(next::put);
+		passengers = next;
+	}
 	
-		passenHash.clear();
+	/**
+	 * Returns the forecasts currently loaded, which must not be changed
+	 * @return the forecasts by key(flightNumber, epochDay)
+	 */
+	LongIntHashMap entries() {
+		return passengers;
 	}
 
 }
@@ -0,0 +1,262 @@
+package solution;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.Pilot;
+
+/**
+ * The ResourceRegistry gives every aircraft, pilot and cabin crew member loaded by the DAOs a dense int id -
+ * their position in the DAO's list - so the scheduler can keep its state in arrays and bitsets rather
+ * than searching lists or building strings. Aircraft, pilots and cabin crew each have their own ids from 0.
+ * It also keeps bitsets of the crew by type rating, home base and rank
+ */
+public class ResourceRegistry {
+
+	private static final BitSet NONE = new BitSet();
+
+	private List<Aircraft> aircraft;
+	private final Map<Aircraft, Integer> aircraftIds = new IdentityHashMap<>();
+
+	//the crew and their bitsets, kept just as the CrewDAO keeps them so a CrewDAO's can be used without indexing them again
+	private CrewDAO.Data crew;
+	private final Map<Pilot, Integer> pilotIds = new IdentityHashMap<>();
+	private final Map<CabinCrew, Integer> cabinCrewIds = new IdentityHashMap<>();
+
+	//the lists and crew are shared with whoever gave them until something is added, and then copied
+	private boolean copied;
+
+	/**
+	 * Registers everything currently loaded in the DAOs
+	 * A CrewDAO's crew are registered with the indexes it already has, so only other DAOs' crew are indexed here
+	 * @param aircraftDAO the aircraft to register
+	 * @param crewDAO the pilots and cabin crew to register
+	 */
+	public ResourceRegistry(IAircraftDAO aircraftDAO, ICrewDAO crewDAO) {
+		this(aircraftDAO.getAllAircraft(), crewDAO instanceof CrewDAO ? ((CrewDAO) crewDAO).snapshot()
+				: CrewDAO.Data.of(crewDAO.getAllPilots(), crewDAO.getAllCabinCrew()));
+	}
+
+	/**
+	 * Registers the given resources, each one's id being its position in its list
+	 * @param aircraft the aircraft to register
+	 * @param pilots the pilots to register
+	 * @param cabinCrew the cabin crew to register
+	 */
+	public ResourceRegistry(List<Aircraft> aircraft, List<Pilot> pilots, List<CabinCrew> cabinCrew) {
+		this(aircraft, CrewDAO.Data.of(pilots, cabinCrew));
+	}
+
+	private ResourceRegistry(List<Aircraft> aircraft, CrewDAO.Data crew) {
+
+		this.aircraft = aircraft;
+		this.crew = crew;
+
+		for(int i = 0; i < aircraft.size(); i++)
+		{
+			aircraftIds.put(aircraft.get(i), i);
+		}
+
+		for(int i = 0; i < crew.pilots.size(); i++)
+		{
+			pilotIds.put(crew.pilots.get(i), i);
+		}
+
+		for(int i = 0; i < crew.cabinCrew.size(); i++)
+		{
+			cabinCrewIds.put(crew.cabinCrew.get(i), i);
+		}
+	}
+
+	/**
+	 * Registers another aircraft, giving it the next id
+	 * Nothing this registry was made from is changed, but it mustn't be added to while allocators on other threads are using it
+	 * @param a the aircraft, which mustn't already be registered
+	 * @return its id
+	 */
+	public int add(Aircraft a) {
+
+		copy();
+		int id = aircraft.size();
+		aircraft.add(a);
+		aircraftIds.put(a, id);
+		return id;
+	}
+
+	/**
+	 * Registers another pilot, giving them the next pilot id and adding them to the pilot bitsets
+	 * @param p the pilot, who mustn't already be registered
+	 * @return their id
+	 */
+	public int add(Pilot p) {
+
+		copy();
+		int id = crew.pilots.size();
+		crew.addPilot(p);
+		pilotIds.put(p, id);
+		return id;
+	}
+
+	/**
+	 * Registers another cabin crew member, giving them the next cabin crew id and adding them to the cabin crew bitsets
+	 * @param c the cabin crew member, who mustn't already be registered
+	 * @return their id
+	 */
+	public int add(CabinCrew c) {
+
+		copy();
+		int id = crew.cabinCrew.size();
+		crew.addCabinCrew(c);
+		cabinCrewIds.put(c, id);
+		return id;
+	}
+
+	private void copy() {
+
+		if(! copied)
+		{
+			aircraft = new ArrayList<>(aircraft);
+			crew = new CrewDAO.Data(crew);
+			copied = true;
+		}
+	}
+
+	/**
+	 * Returns the number of registered aircraft
+	 * @return the number of registered aircraft
+	 */
+	public int aircraftCount() {
+		return aircraft.size();
+	}
+
+	/**
+	 * Returns the number of registered pilots
+	 * @return the number of registered pilots
+	 */
+	public int pilotCount() {
+		return crew.pilots.size();
+	}
+
+	/**
+	 * Returns the number of registered cabin crew
+	 * @return the number of registered cabin crew
+	 */
+	public int cabinCrewCount() {
+		return crew.cabinCrew.size();
+	}
+
+	/**
+	 * Returns the aircraft with an id
+	 * @param id the aircraft's id
+	 * @return the aircraft
+	 */
+	public Aircraft aircraft(int id) {
+		return aircraft.get(id);
+	}
+
+	/**
+	 * Returns the pilot with an id
+	 * @param id the pilot's id
+	 * @return the pilot
+	 */
+	public Pilot pilot(int id) {
+		return crew.pilots.get(id);
+	}
+
+	/**
+	 * Returns the cabin crew member with an id
+	 * @param id the cabin crew member's id
+	 * @return the cabin crew member
+	 */
+	public CabinCrew cabinCrew(int id) {
+		return crew.cabinCrew.get(id);
+	}
+
+	/**
+	 * Returns all of the registered aircraft, in id order
+	 * @return the aircraft
+	 */
+	public List<Aircraft> allAircraft() {
+		return aircraft;
+	}
+
+	/**
+	 * Returns an aircraft's id
+	 * @param a the aircraft
+	 * @return its id, or -1 if it isn't registered
+	 */
+	public int idOf(Aircraft a) {
+		return aircraftIds.getOrDefault(a, -1);
+	}
+
+	/**
+	 * Returns a pilot's id
+	 * @param p the pilot
+	 * @return their id, or -1 if they aren't registered
+	 */
+	public int idOf(Pilot p) {
+		return pilotIds.getOrDefault(p, -1);
+	}
+
+	/**
+	 * Returns a cabin crew member's id
+	 * @param c the cabin crew member
+	 * @return their id, or -1 if they aren't registered
+	 */
+	public int idOf(CabinCrew c) {
+		return cabinCrewIds.getOrDefault(c, -1);
+	}
+
+	/**
+	 * The ids of the pilots with a type rating; the bitsets returned by these methods must not be changed
+	 * @param typeCode the aircraft type
+	 * @return the pilot ids
+	 */
+	public BitSet pilotsRatedFor(String typeCode) {
+		return crew.pilotsByTypeRating.getOrDefault(typeCode, NONE);
+	}
+
+	/**
+	 * The ids of the pilots based at an airport
+	 * @param airportCode the airport
+	 * @return the pilot ids
+	 */
+	public BitSet pilotsBasedAt(String airportCode) {
+		return crew.pilotsByHomeBase.getOrDefault(airportCode, NONE);
+	}
+
+	/**
+	 * The ids of the pilots of a rank
+	 * @param rank the rank
+	 * @return the pilot ids
+	 */
+	public BitSet pilotsOfRank(Pilot.Rank rank) {
+		return crew.pilotsByRank.getOrDefault(rank, NONE);
+	}
+
+	/**
+	 * The ids of the cabin crew with a type rating
+	 * @param typeCode the aircraft type
+	 * @return the cabin crew ids
+	 */
+	public BitSet cabinCrewRatedFor(String typeCode) {
+		return crew.cabinByTypeRating.getOrDefault(typeCode, NONE);
+	}
+
+	/**
+	 * The ids of the cabin crew based at an airport
+	 * @param airportCode the airport
+	 * @return the cabin crew ids
+	 */
+	public BitSet cabinCrewBasedAt(String airportCode) {
+		return crew.cabinByHomeBase.getOrDefault(airportCode, NONE);
+	}
+
+}
@@ -0,0 +1,122 @@
+package solution;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.Schedule;
+
+/**
+ * The RollingScheduler schedules a long horizon a window of days at a time, handing each window's Schedule
+ * to a ScheduleSink when it is finished. Only what crosses into the next window is carried over - where each
+ * aircraft is, and the flights still in the air at the end of the window - so memory doesn't grow with the horizon.
+ * Flights are chosen for in the same order and the same way as by the Scheduler, so together the windows
+ * come out the same as one schedule for the whole horizon would
+ */
+public class RollingScheduler {
+
+	public static final int DEFAULT_WINDOW = 7;
+
+	private final int windowDays;
+
+	//about the last run
+	private int completed;
+	private int remaining;
+
+	/**
+	 * Creates a scheduler with windows of DEFAULT_WINDOW days
+	 */
+	public RollingScheduler() {
+		this(DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Creates a scheduler with windows of the given number of days
+	 * @param windowDays the number of days in each window
+	 */
+	public RollingScheduler(int windowDays) {
+
+		if(windowDays < 1)
+		{
+			throw new IllegalArgumentException("a window must be at least 1 day, not " + windowDays);
+		}
+		this.windowDays = windowDays;
+	}
+
+	/**
+	 * Schedules the horizon a window at a time, giving each window's schedule to the sink in date order
+	 * @param aircraftDAO the DAO for the aircraft to be used when scheduling
+	 * @param crewDAO the DAO for the crew to be used when scheduling
+	 * @param routeDAO the DAO to use for routes when scheduling
+	 * @param passengerNumbersDAO the DAO to use for passenger numbers when scheduling
+	 * @param startDate the start of the scheduling horizon
+	 * @param endDate the end of the scheduling horizon
+	 * @param sink where each window's schedule goes
+	 */
+	public void generateSchedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO,
+			IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate, ScheduleSink sink) {
+
+		completed = 0;
+		remaining = 0;
+
+		ResourceRegistry registry = new ResourceRegistry(aircraftDAO, crewDAO);
+		FlightAllocator allocator = new FlightAllocator(registry);
+
+		for(LocalDate from = startDate; ! from.isAfter(endDate); from = from.plusDays(windowDays))
+		{
+			LocalDate to = from.plusDays(windowDays - 1);
+
+			if(to.isAfter(endDate))
+			{
+				to = endDate;
+			}
+
+			Schedule s = new Schedule(routeDAO, from, to);
+			List<FlightInfo> flights = s.getRemainingAllocations();
+			int[] pass = Scheduler.passengersFor(flights, passengerNumbersDAO, from, to);
+
+			//the window's Schedule doesn't know about earlier windows, the allocator's bookings still running into it cover that
+			for(int i = 0; i < pass.length; i++)
+			{
+				FlightInfo f = flights.get(i);
+				Scheduler.complete(s, f, allocator.plan(f, pass[i], s), allocator);
+			}
+
+			//only the flights still in the air when the next window starts can clash with it
+			allocator.forgetEndingBy(IntervalIndex.minutes(to.plusDays(1).atStartOfDay()));
+
+			completed += s.getCompletedAllocations().size();
+			remaining += s.getRemainingAllocations().size();
+			sink.windowScheduled(from, to, s);
+		}
+	}
+
+	/**
+	 * Returns the number of flights completed across every window of the last run
+	 * @return the number of flights completed
+	 */
+	public int getCompleted() {
+		return completed;
+	}
+
+	/**
+	 * Returns the number of flights that couldn't be completed across every window of the last run
+	 * @return the number of flights remaining
+	 */
+	public int getRemaining() {
+		return remaining;
+	}
+
+	/**
+	 * Returns the number of days in each window
+	 * @return the window size
+	 */
+	public int getWindowDays() {
+		return windowDays;
+	}
+
+}
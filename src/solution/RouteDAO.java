@@ -1,11 +1,9 @@
 package solution;
 import java.io.IOException;
-
-
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
-import java.text.DateFormatSymbols;
-
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.TextStyle;
@@ -13,19 +11,17 @@ import java.time.DayOfWeek;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
-
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import baseclasses.DataLoadingException;
 import baseclasses.IRouteDAO;
@@ -37,79 +33,230 @@ import baseclasses.Route;
  */
 public class RouteDAO implements IRouteDAO {
 	
-	List<Route> route = new ArrayList<>();
+	//the 9 child elements of a Route, in the order they are read
+	private static final String[] FIELDS = {"DayOfWeek", "FlightNumber", "DepartureTime", "DepartureAirport",
+			"DepartureAirportIATACode", "ArrivalAirport", "ArrivalAirportIATACode", "ArrivalTime", "Duration"};
+	private static final int DAY_OF_WEEK = 0, FLIGHT_NUMBER = 1, DEPARTURE_TIME = 2, DEPARTURE_AIRPORT = 3,
+			DEPARTURE_CODE = 4, ARRIVAL_AIRPORT = 5, ARRIVAL_CODE = 6, ARRIVAL_TIME = 7, DURATION = 8;
+	private static final Map<String, Integer> FIELD_INDEX = new HashMap<>();
+	
+	static {
+		for(int i = 0; i < FIELDS.length; i++)
+		{
+			FIELD_INDEX.put(FIELDS[i], i);
+		}
+	}
+	
+	//three letter day names, fixed to English so matching doesn't depend on the JVM's default locale
+	private static final Map<String, DayOfWeek> DAYS = new HashMap<>();
+	
+	static {
+		for(DayOfWeek day : DayOfWeek.values())
+		{
+			DAYS.put(day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), day);
+		}
+	}
+	
+	//what loading and the finders record in Metrics
+	private static final Metrics.Timer LOAD = Metrics.timer("load.routes");
+	private static final Metrics.Counter LOAD_ROWS = Metrics.counter("load.routes.rows");
+	private static final Metrics.Counter LOAD_BYTES = Metrics.counter("load.routes.bytes");
+	private static final Metrics.Timer QUERY_BY_DAY = Metrics.timer("query.routes.byDayOfWeek");
+	private static final Metrics.Timer QUERY_BY_AIRPORT_AND_DAY = Metrics.timer("query.routes.byDepartureAirportAndDay");
+	private static final Metrics.Timer QUERY_BY_AIRPORT = Metrics.timer("query.routes.departingAirport");
+	private static final Metrics.Timer QUERY_BY_DATE = Metrics.timer("query.routes.byDate");
+	
+	//everything loaded, replaced as a whole by each load or reset so the finders never see half a load
+	private volatile Data data = new Data();
 
 	/**
 	 * Loads the route data from the specified file, adding them to the currently loaded routes
 	 * Multiple calls to this function, perhaps on different files, would thus be cumulative
+	 * The file is streamed, so only the route being read is held in memory
+	 * If the file isn't well-formed XML nothing is added; if a route is invalid the routes before it are still added
 	 * @param p A Path pointing to the file from which data could be loaded
 	 * @throws DataLoadingException if anything goes wrong. The exception's "cause" indicates the underlying exception
 	 */
 	@Override
 	public void loadRouteData(Path p) throws DataLoadingException {
 		
-		try 
+		long t = Metrics.start();
+		
+		try (InputStream in = Files.newInputStream(p))
 		 { 
-
-			DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();			
-			Document doc = db.parse(p.toString());
+			XMLStreamReader xml = XMLInputFactory.newInstance().createXMLStreamReader(p.toUri().toString(), in);
 			
-			try {      
-				
-			Element root = doc.getDocumentElement(); 
-			NodeList routes = root.getElementsByTagName("Route");
-		
-			for(int i=0;i<routes.getLength();i++) 
-			{
-				Route rts = new Route();
-				
-				
-				Node node = routes.item(i);
-				
-				Element eElement = (Element) node;
-				
-				if(eElement.getElementsByTagName("*").getLength() == 9)
+			List<Route> newRoutes = new ArrayList<>();
+			DataLoadingException invalid = null;//the first bad route, reported once the whole file is known to be well-formed
+			
+			String[] fields = new String[FIELDS.length];
+			StringBuilder text = new StringBuilder();
+			
+			int depth = 0;
+			int routeDepth = -1;//depth of the Route being read, -1 when outside one
+			int textDepth = -1;//depth of the field whose text is being collected, -1 when none
+			int textField = -1;
+			int children = 0;
+			
+			try {
+				while(xml.hasNext())
 				{
-					String shortDate = eElement.getElementsByTagName("DayOfWeek").item(0).getTextContent();
-					String daysList[]  = new DateFormatSymbols().getShortWeekdays(); //gets a array of shortend days
-					
-					if(Arrays.asList(daysList).contains(shortDate)){//check to ensure it matches
-						 rts.setDayOfWeek(shortDate);
-					}
-					else
+					switch(xml.next())
 					{
-						throw new DataLoadingException();
+					case XMLStreamConstants.START_ELEMENT:
+						depth++;
+						String name = name(xml);
+						
+						if(routeDepth == -1)
+						{
+							//any Route below the root element, as getElementsByTagName("Route") would find
+							if(depth > 1 && name.equals("Route"))
+							{
+								routeDepth = depth;
+								children = 0;
+								Arrays.fill(fields, null);
+							}
+						}
+						else
+						{
+							children++;
+							Integer field = FIELD_INDEX.get(name);
+							
+							//only the first element with each name counts, like item(0) did
+							if(textDepth == -1 && field != null && fields[field] == null)
+							{
+								textDepth = depth;
+								textField = field;
+								text.setLength(0);
+							}
+						}
+						break;
+						
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+					case XMLStreamConstants.SPACE:
+						if(textDepth != -1)
+						{
+							text.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+						}
+						break;
+						
+					case XMLStreamConstants.END_ELEMENT:
+						if(depth == textDepth)
+						{
+							fields[textField] = text.toString();
+							textDepth = -1;
+						}
+						else if(depth == routeDepth)
+						{
+							if(invalid == null)
+							{
+								try {
+									newRoutes.add(toRoute(fields, children));
+								}
+								catch(DataLoadingException e)
+								{
+									invalid = e;
+								}
+							}
+							routeDepth = -1;
+						}
+						depth--;
+						break;
+						
+					default:
+						break;
 					}
-
-					rts.setFlightNumber(Integer.parseInt(eElement.getElementsByTagName("FlightNumber").item(0).getTextContent()));
-					rts.setDepartureTime(LocalTime.parse(eElement.getElementsByTagName("DepartureTime").item(0).getTextContent()));
-					rts.setDepartureAirport(eElement.getElementsByTagName("DepartureAirport").item(0).getTextContent());
-					rts.setDepartureAirportCode(eElement.getElementsByTagName("DepartureAirportIATACode").item(0).getTextContent());
-					rts.setArrivalAirport(eElement.getElementsByTagName("ArrivalAirport").item(0).getTextContent());
-					rts.setArrivalAirportCode(eElement.getElementsByTagName("ArrivalAirportIATACode").item(0).getTextContent());
-					rts.setArrivalTime(LocalTime.parse(eElement.getElementsByTagName("ArrivalTime").item(0).getTextContent()));
-					rts.setDuration(Duration.parse(eElement.getElementsByTagName("Duration").item(0).getTextContent()));
-					route.add(rts);
 				}
-				else
-				{
-					throw new DataLoadingException();
-				}
-				
-			} 
+			}
+			finally
+			{
+				xml.close();
+			}
+			
+			addAll(newRoutes);
 			
-			} 
-			catch(Exception e) 
-			{throw new DataLoadingException(e);}
+			if(Metrics.isEnabled())
+			{
+				LOAD_ROWS.add(newRoutes.size());
+				LOAD_BYTES.add(Files.size(p));
+			}
+			
+			if(invalid != null)
+			{
+				throw invalid;
+			}
 		 }
 		
-	catch (ParserConfigurationException | SAXException | IOException |  NullPointerException e) 
+	catch (XMLStreamException | IOException |  NullPointerException e) 
 	 {
 		System.err.println("Error opening XML file:" + e); 
 		throw new DataLoadingException(e);
 	 }
+	finally
+	{
+		LOAD.stop(t);
+	}
 }
-
+	
+	/**
+	 * Builds a route from the text of its child elements
+	 * A route must have exactly 9 child elements and a three letter English day of the week, e.g. "Tue"
+	 */
+	private static Route toRoute(String[] fields, int children) throws DataLoadingException {
+		
+		try {
+			Route rts = new Route();
+			
+			if(children != 9)
+			{
+				throw new DataLoadingException();
+			}
+			
+			String shortDate = required(fields[DAY_OF_WEEK]);
+			
+			if(DAYS.containsKey(shortDate)){//check to ensure it matches
+				 rts.setDayOfWeek(shortDate);
+			}
+			else
+			{
+				throw new DataLoadingException();
+			}
+			
+			rts.setFlightNumber(Integer.parseInt(required(fields[FLIGHT_NUMBER])));
+			rts.setDepartureTime(LocalTime.parse(fields[DEPARTURE_TIME]));
+			rts.setDepartureAirport(required(fields[DEPARTURE_AIRPORT]));
+			rts.setDepartureAirportCode(required(fields[DEPARTURE_CODE]));
+			rts.setArrivalAirport(required(fields[ARRIVAL_AIRPORT]));
+			rts.setArrivalAirportCode(required(fields[ARRIVAL_CODE]));
+			rts.setArrivalTime(LocalTime.parse(fields[ARRIVAL_TIME]));
+			rts.setDuration(Duration.parse(fields[DURATION]));
+			
+			return rts;
+		}
+		catch(Exception e) 
+		{
+			throw new DataLoadingException(e);
+		}
+	}
+	
+	//a missing field is an error, the same NullPointerException the DOM lookups gave
+	private static String required(String field) {
+		
+		if(field == null)
+		{
+			throw new NullPointerException();
+		}
+		return field;
+	}
+	
+	//the element's name as written in the file, including any prefix
+	private static String name(XMLStreamReader xml) {
+		
+		String prefix = xml.getPrefix();
+		return prefix == null || prefix.isEmpty() ? xml.getLocalName() : prefix + ":" + xml.getLocalName();
+	}
+	
 	/**
 	 * Finds all flights that depart on the specified day of the week
 	 * @param dayOfWeek A three letter day of the week, e.g. "Tue"
@@ -117,17 +264,13 @@ public class RouteDAO implements IRouteDAO {
 	 */
 	@Override
 	public List<Route> findRoutesByDayOfWeek(String dayOfWeek) {
-		// TODO Auto-generated method stub
-		List<Route> dayRoute = new ArrayList<>();
 		
-		for(Route r : route)
-		{
-			if(r.getDayOfWeek().equals(dayOfWeek))
-			{
-				dayRoute.add(r);
-			}
-		}
-		return dayRoute;
+		long t = Metrics.start();
+		DayOfWeek day = DAYS.get(dayOfWeek);
+		List<Route> found = day == null ? new ArrayList<>() : new ArrayList<>(data.byDay.get(day));
+		
+		QUERY_BY_DAY.stop(t);
+		return found;
 	}
 
 	/**
@@ -138,17 +281,18 @@ public class RouteDAO implements IRouteDAO {
 	 */
 	@Override
 	public List<Route> findRoutesByDepartureAirportAndDay(String airportCode, String dayOfWeek) {
-		// TODO Auto-generated method stub
-		List<Route> newRoute = new ArrayList<>();
 		
-		for(Route r : route)
+		long t = Metrics.start();
+		DayOfWeek day = DAYS.get(dayOfWeek);
+		List<Route> found = new ArrayList<>();
+		
+		if(day != null)
 		{
-			if(r.getDepartureAirportCode().equals(airportCode) && r.getDayOfWeek().equals(dayOfWeek))
-			{
-					newRoute.add(r);
-			}
+			found.addAll(data.byDayAndAirport.get(day).getOrDefault(airportCode, Collections.emptyList()));
 		}
-		return newRoute;
+		
+		QUERY_BY_AIRPORT_AND_DAY.stop(t);
+		return found;
 	}
 
 	/**
@@ -158,17 +302,12 @@ public class RouteDAO implements IRouteDAO {
 	 */
 	@Override
 	public List<Route> findRoutesDepartingAirport(String airportCode) {
-		// TODO Auto-generated method stub
-		List<Route> airRoute = new ArrayList<>();
 		
-		for(Route r : route)
-		{
-			if(r.getDepartureAirportCode().equals(airportCode))
-			{
-				airRoute.add(r);
-			}
-		}
-		return airRoute;
+		long t = Metrics.start();
+		List<Route> found = new ArrayList<>(data.byAirport.getOrDefault(airportCode, Collections.emptyList()));
+		
+		QUERY_BY_AIRPORT.stop(t);
+		return found;
 	}
 
 	/**
@@ -178,34 +317,12 @@ public class RouteDAO implements IRouteDAO {
 	 */
 	@Override
 	public List<Route> findRoutesbyDate(LocalDate date) {
-		// TODO Auto-generated method stub
-		List<Route> dateRoute = new ArrayList<>();
 		 
-		if(date == null) 
-		{
-			return dateRoute;
-		}
-		else {
-					
-			try {
-				DayOfWeek day = date.getDayOfWeek();//gets the day from the full localdate input
-				String days = day.getDisplayName(TextStyle.SHORT,Locale.getDefault());//converts the day to a short date (Friday -> Fri)
-				
-				for(Route r : route)
-				{
-					if(r.getDayOfWeek().equals(days))
-					{
-						dateRoute.add(r);
-					}
-				}
-			}
-			catch(Exception e)
-			{
-				e.printStackTrace();
-			}
-	
-			return dateRoute;
-		}
+		long t = Metrics.start();
+		List<Route> found = date == null ? new ArrayList<>() : new ArrayList<>(data.byDay.get(date.getDayOfWeek()));
+		
+		QUERY_BY_DATE.stop(t);
+		return found;
 	}
 
 	/**
@@ -214,10 +331,9 @@ public class RouteDAO implements IRouteDAO {
 	 */
 	@Override
 	public List<Route> getAllRoutes() {
-		// TODO Auto-generated method stub
 		List<Route> allRoute = new ArrayList<>();
 		
-		allRoute.addAll(route);
+		allRoute.addAll(data.routes);
 		
 		return allRoute;
 	}
@@ -228,18 +344,135 @@ public class RouteDAO implements IRouteDAO {
 	 */
 	@Override
 	public int getNumberOfRoutes() {
-		// TODO Auto-generated method stub
-		return route.size();
+		return data.routes.size();
 	}
 
 	/**
 	 * Unloads all of the crew currently loaded, ready to start again if needed
 	 */
 	@Override
-	public void reset() {
+	public synchronized void reset() {
+		data = new Data();
+	}
+	
+	/**
+	 * Adds routes to the loaded list and to the day and airport indexes, by copying what is loaded, adding to the copy
+	 * and then replacing it, so the finders see all of them or none
+	 * Loads are serialised with each other, but never with the finders
+	 * @param added the routes to add, in order, each one's day of the week must be one of the three letter English names
+	 */
+	synchronized void addAll(List<Route> added) {
 		
-		route.clear();
-
+		Data next = new Data(data);
+		added.forEach(next::add);
+		data = next;
+	}
+	
+	/**
+	 * Applies the changes found by reloading the file: changed routes take the place of the ones they replace,
+	 * removed ones are dropped and added ones go on the end, so every other route keeps its place
+	 * Only the index entries of the routes in the delta are touched, and the finders see all of it or none
+	 * @param delta the changes, against what is loaded now
+	 */
+	synchronized void apply(DataDelta<Route> delta) {
+		
+		Data next = new Data(data);
+		next.apply(delta);
+		data = next;
+	}
+	
+	/**
+	 * The loaded routes, indexed by day of the week, by departure airport within each day, and by departure airport
+	 * A Data is only changed while it is being built, before it is published in the data field,
+	 * so any number of threads can read it after that without locking
+	 */
+	private static class Data {
+		
+		final List<Route> routes;
+		final Map<DayOfWeek, List<Route>> byDay = new EnumMap<>(DayOfWeek.class);
+		final Map<DayOfWeek, Map<String, List<Route>>> byDayAndAirport = new EnumMap<>(DayOfWeek.class);
+		final Map<String, List<Route>> byAirport;
+		
+		Data() {
+			
+			routes = new ArrayList<>();
+			byAirport = new HashMap<>();
+			
+			for(DayOfWeek day : DayOfWeek.values())
+			{
+				byDay.put(day, new ArrayList<>());
+				byDayAndAirport.put(day, new HashMap<>());
+			}
+		}
+		
+		//a copy to add to, down to the lists in the indexes, so the original is left as it was
+		Data(Data from) {
+			
+			routes = new ArrayList<>(from.routes);
+			byAirport = copy(from.byAirport);
+			
+			for(DayOfWeek day : DayOfWeek.values())
+			{
+				byDay.put(day, new ArrayList<>(from.byDay.get(day)));
+				byDayAndAirport.put(day, copy(from.byDayAndAirport.get(day)));
+			}
+		}
+		
+		void add(Route r) {
+			
+			DayOfWeek day = DAYS.get(r.getDayOfWeek());
+			
+			routes.add(r);
+			byDay.get(day).add(r);
+			byDayAndAirport.get(day).computeIfAbsent(r.getDepartureAirportCode(), k -> new ArrayList<>()).add(r);
+			byAirport.computeIfAbsent(r.getDepartureAirportCode(), k -> new ArrayList<>()).add(r);
+		}
+		
+		void apply(DataDelta<Route> delta) {
+			
+			DataDelta.applyTo(routes, delta);
+			
+			for(Route r : delta.getRemoved())
+			{
+				DayOfWeek day = DAYS.get(r.getDayOfWeek());
+				
+				DataDelta.unindex(byDay, day, r);
+				DataDelta.unindex(byDayAndAirport.get(day), r.getDepartureAirportCode(), r);
+				DataDelta.unindex(byAirport, r.getDepartureAirportCode(), r);
+			}
+			
+			for(int i = 0; i < delta.getUpdatedBefore().size(); i++)
+			{
+				Route was = delta.getUpdatedBefore().get(i);
+				Route now = delta.getUpdatedAfter().get(i);
+				DayOfWeek day = DAYS.get(was.getDayOfWeek());
+				
+				//routes are matched by flight number and day, so a changed route is on the same day
+				DataDelta.reindex(byDay, day, was, day, now);
+				DataDelta.reindex(byDayAndAirport.get(day), was.getDepartureAirportCode(), was, now.getDepartureAirportCode(), now);
+				DataDelta.reindex(byAirport, was.getDepartureAirportCode(), was, now.getDepartureAirportCode(), now);
+			}
+			
+			for(Route r : delta.getAdded())
+			{
+				DayOfWeek day = DAYS.get(r.getDayOfWeek());
+				
+				byDay.get(day).add(r);
+				byDayAndAirport.get(day).computeIfAbsent(r.getDepartureAirportCode(), k -> new ArrayList<>()).add(r);
+				byAirport.computeIfAbsent(r.getDepartureAirportCode(), k -> new ArrayList<>()).add(r);
+			}
+		}
+		
+		private static Map<String, List<Route>> copy(Map<String, List<Route>> from) {
+			
+			Map<String, List<Route>> to = new HashMap<>();
+			
+			for(Map.Entry<String, List<Route>> e : from.entrySet())
+			{
+				to.put(e.getKey(), new ArrayList<>(e.getValue()));
+			}
+			return to;
+		}
 	}
 
 }
@@ -0,0 +1,173 @@
+package solution;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import baseclasses.Aircraft;
+import baseclasses.Crew;
+import baseclasses.Route;
+
+/**
+ * A ScheduleChange lists what has changed since a schedule was made by the IncrementalScheduler,
+ * so it can repair the schedule rather than make it again
+ */
+public class ScheduleChange {
+
+	private final List<Aircraft> removedAircraft = new ArrayList<>();
+	private final List<Crew> removedCrew = new ArrayList<>();
+	private final List<Aircraft> addedAircraft = new ArrayList<>();
+	private final List<Crew> addedCrew = new ArrayList<>();
+	private final Map<Long, Integer> forecasts = new LinkedHashMap<>();
+	private final List<Route> addedRoutes = new ArrayList<>();
+	private final List<Route> cancelledRoutes = new ArrayList<>();
+
+	/**
+	 * Takes an aircraft out of service, for example when it is grounded
+	 * @param a the aircraft, as loaded by the AircraftDAO the schedule was made with
+	 */
+	public void removeAircraft(Aircraft a) {
+		removedAircraft.add(a);
+	}
+
+	/**
+	 * Takes a pilot or cabin crew member out of service
+	 * @param c the crew member, as loaded by the CrewDAO the schedule was made with
+	 */
+	public void removeCrew(Crew c) {
+		removedCrew.add(c);
+	}
+
+	/**
+	 * Puts an aircraft into service, so it can be chosen for flights that are chosen for again
+	 * @param a the aircraft, either new or one taken out of service earlier
+	 */
+	public void addAircraft(Aircraft a) {
+		addedAircraft.add(a);
+	}
+
+	/**
+	 * Puts a pilot or cabin crew member into service, so they can be chosen for flights that are chosen for again
+	 * @param c the crew member, either new or one taken out of service earlier
+	 */
+	public void addCrew(Crew c) {
+		addedCrew.add(c);
+	}
+
+	/**
+	 * Changes an aircraft's details: the aircraft as it was is taken out of service and the aircraft as it is now
+	 * put in, so the flights it was booked on are chosen for again with its new details
+	 * @param before the aircraft as it was, as loaded by the AircraftDAO the schedule was made with
+	 * @param after the aircraft as it is now
+	 */
+	public void replaceAircraft(Aircraft before, Aircraft after) {
+		removeAircraft(before);
+		addAircraft(after);
+	}
+
+	/**
+	 * Changes a crew member's details, in the same way as replaceAircraft()
+	 * @param before the crew member as they were, as loaded by the CrewDAO the schedule was made with
+	 * @param after the crew member as they are now
+	 */
+	public void replaceCrew(Crew before, Crew after) {
+		removeCrew(before);
+		addCrew(after);
+	}
+
+	/**
+	 * Changes the forecast number of passengers for one flight
+	 * @param flightNumber the flight's number
+	 * @param date the date it departs
+	 * @param passengers the new forecast
+	 */
+	public void changeForecast(int flightNumber, LocalDate date, int passengers) {
+		forecasts.put(PassengerNumbersDAO.key(flightNumber, date.toEpochDay()), passengers);
+	}
+
+	/**
+	 * Adds a route, which is flown on its day of the week throughout the horizon
+	 * If a route with the same flight number is already flown on that day, this one takes its place
+	 * @param r the route
+	 */
+	public void addRoute(Route r) {
+		addedRoutes.add(r);
+	}
+
+	/**
+	 * Cancels a route, so its flight number is no longer flown on its day of the week
+	 * @param r the route
+	 */
+	public void cancelRoute(Route r) {
+		cancelledRoutes.add(r);
+	}
+
+	/**
+	 * Returns the aircraft taken out of service
+	 * @return the aircraft
+	 */
+	public List<Aircraft> getRemovedAircraft() {
+		return Collections.unmodifiableList(removedAircraft);
+	}
+
+	/**
+	 * Returns the crew taken out of service
+	 * @return the crew
+	 */
+	public List<Crew> getRemovedCrew() {
+		return Collections.unmodifiableList(removedCrew);
+	}
+
+	/**
+	 * Returns the aircraft put into service, which are put in after the removed aircraft are taken out
+	 * @return the aircraft
+	 */
+	public List<Aircraft> getAddedAircraft() {
+		return Collections.unmodifiableList(addedAircraft);
+	}
+
+	/**
+	 * Returns the crew put into service, who are put in after the removed crew are taken out
+	 * @return the crew
+	 */
+	public List<Crew> getAddedCrew() {
+		return Collections.unmodifiableList(addedCrew);
+	}
+
+	/**
+	 * Returns the changed forecasts, keyed as in the PassengerNumbersDAO by flight number and epoch day
+	 * @return the new forecast for each flight changed
+	 */
+	public Map<Long, Integer> getForecasts() {
+		return Collections.unmodifiableMap(forecasts);
+	}
+
+	/**
+	 * Returns the routes added
+	 * @return the routes
+	 */
+	public List<Route> getAddedRoutes() {
+		return Collections.unmodifiableList(addedRoutes);
+	}
+
+	/**
+	 * Returns the routes cancelled
+	 * @return the routes
+	 */
+	public List<Route> getCancelledRoutes() {
+		return Collections.unmodifiableList(cancelledRoutes);
+	}
+
+	/**
+	 * Returns whether nothing has changed
+	 * @return true if the change is empty
+	 */
+	public boolean isEmpty() {
+		return removedAircraft.isEmpty() && removedCrew.isEmpty() && addedAircraft.isEmpty() && addedCrew.isEmpty()
+				&& forecasts.isEmpty() && addedRoutes.isEmpty() && cancelledRoutes.isEmpty();
+	}
+
+}
@@ -0,0 +1,66 @@
+package solution;
+
+import java.util.List;
+
+import baseclasses.FlightInfo;
+
+/**
+ * A ScheduleObjective scores the choices made for flights, lower being better, for the LocalSearchOptimizer.
+ * The score of a schedule is the sum of the costs of each flight's aircraft and crew, plus the cost of each aircraft
+ * getting from where its previous flight left it, so a change to one flight can be scored from that flight and the
+ * flights just after it alone. Flights are numbered by their position in the list the objective was created for,
+ * which is in departure order, and aircraft and crew by their ResourceRegistry ids
+ */
+public interface ScheduleObjective {
+
+	/**
+	 * Creates an objective for a particular horizon, so it can work out whatever it needs up front
+	 */
+	interface Factory {
+
+		/**
+		 * Creates an objective for the given flights
+		 * @param registry the aircraft and crew
+		 * @param flights the flights being scheduled
+		 * @param passengers the forecast for each flight, or -1 where there isn't one
+		 * @return the objective
+		 */
+		ScheduleObjective create(ResourceRegistry registry, List<FlightInfo> flights, int[] passengers);
+	}
+
+	/**
+	 * The cost of an aircraft flying a flight
+	 * @param flight the flight's number
+	 * @param aircraft the aircraft's id
+	 * @return the cost
+	 */
+	int aircraftCost(int flight, int aircraft);
+
+	/**
+	 * The cost of an aircraft being where it needs to be for a flight, given the flight it flew before
+	 * @param flight the flight's number
+	 * @param aircraft the aircraft's id
+	 * @param previous the number of the aircraft's flight before this one, or -1 if this is its first
+	 * @return the cost
+	 */
+	int positionCost(int flight, int aircraft, int previous);
+
+	/**
+	 * The cost of a pilot flying a flight on an aircraft
+	 * @param flight the flight's number
+	 * @param aircraft the aircraft's id
+	 * @param pilot the pilot's id
+	 * @return the cost
+	 */
+	int pilotCost(int flight, int aircraft, int pilot);
+
+	/**
+	 * The cost of a cabin crew member working a flight on an aircraft
+	 * @param flight the flight's number
+	 * @param aircraft the aircraft's id
+	 * @param cabinCrew the cabin crew member's id
+	 * @return the cost
+	 */
+	int cabinCrewCost(int flight, int aircraft, int cabinCrew);
+
+}
@@ -0,0 +1,21 @@
+package solution;
+
+import java.time.LocalDate;
+
+import baseclasses.Schedule;
+
+/**
+ * A ScheduleSink is given each window's schedule by the RollingScheduler as soon as it is finished,
+ * so it can be written out or summarised and then dropped
+ */
+public interface ScheduleSink {
+
+	/**
+	 * Takes a finished window's schedule
+	 * @param startDate the first day of the window
+	 * @param endDate the last day of the window
+	 * @param window the schedule of the flights departing in the window, which won't be changed again
+	 */
+	void windowScheduled(LocalDate startDate, LocalDate endDate, Schedule window);
+
+}
@@ -2,13 +2,15 @@ package solution;
 
 import java.time.LocalDate;
 
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
-import baseclasses.Aircraft;
-import baseclasses.CabinCrew;
-import baseclasses.DoubleBookedException;
+import baseclasses.DataLoadingException;
 import baseclasses.FlightInfo;
 import baseclasses.IAircraftDAO;
 import baseclasses.ICrewDAO;
@@ -16,7 +18,6 @@ import baseclasses.IPassengerNumbersDAO;
 import baseclasses.IRouteDAO;
 import baseclasses.IScheduler;
 import baseclasses.InvalidAllocationException;
-import baseclasses.Pilot;
 import baseclasses.Schedule;
 
 /**
@@ -28,6 +29,56 @@ import baseclasses.Schedule;
  */
 public class Scheduler implements IScheduler {
 
+	//when scheduling in parallel, each departure airport's flights are split into blocks of this many days
+	public static final int DAY_BLOCK = 7;
+	
+	//what scheduling records in Metrics, a retry is a flight replanned because its parallel plan clashed
+	private static final Metrics.Timer GENERATE = Metrics.timer("schedule.generate");
+	private static final Metrics.Timer OPTIMISE = Metrics.timer("schedule.optimise");
+	private static final Metrics.Counter RETRIES = Metrics.counter("schedule.retries");
+	private static final Metrics.Counter COMPLETED = Metrics.counter("schedule.completed");
+	private static final Metrics.Counter INVALID = Metrics.counter("schedule.invalid");
+	
+	private final int parallelism;
+	private LocalSearchOptimizer optimizer;
+	
+	/**
+	 * Creates a scheduler that works through the flights one at a time on the calling thread
+	 */
+	public Scheduler() {
+		this(1);
+	}
+	
+	/**
+	 * Creates a scheduler that splits the flights by departure airport and DAY_BLOCK day blocks and schedules
+	 * the blocks at the same time, then merges them in departure order, replanning any flight whose choices
+	 * clash with an earlier one from another block. The result only depends on the data, not on the timing of the threads
+	 * @param parallelism the number of threads to use, 1 gives exactly the same schedule as the no argument constructor
+	 */
+	public Scheduler(int parallelism) {
+		
+		if(parallelism < 1)
+		{
+			throw new IllegalArgumentException("parallelism must be at least 1, not " + parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Returns the number of threads this scheduler uses
+	 * @return the parallelism
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * Sets an optimizer to improve the aircraft and crew chosen for each flight once they have all been chosen
+	 * @param optimizer the optimizer, or null to keep the first choices, which is the default
+	 */
+	public void setOptimizer(LocalSearchOptimizer optimizer) {
+		this.optimizer = optimizer;
+	}
 	
 	/**
 	 * Generates a schedule, providing you with ready-loaded DAO objects to get your data from
@@ -43,255 +94,193 @@ public class Scheduler implements IScheduler {
 	public Schedule generateSchedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, 
 			IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate) {
 		
-		//FlightInfo f = new FlightInfo(null, endDate);
+		long t = Metrics.start();
+		Schedule s = new Schedule(routeDAO, startDate, endDate);
 		
+		List<FlightInfo> flightSched = s.getRemainingAllocations();
 		
-		//all aircraft
-		//removes the busy ones reduces it 
-		//removes aircraft wrong airport
-		//remove aircraft that are not big enough
-		//after those if (list is empty go back to previous step)
+		//every aircraft and crew member is known by a dense id from here on
+		ResourceRegistry registry = new ResourceRegistry(aircraftDAO, crewDAO);
+		int[] pass = passengersFor(flightSched, passengerNumbersDAO, startDate, endDate);
 		
-		//all crew look at free to fly and check if there qualified
-		Schedule s = new Schedule(routeDAO, startDate, endDate);
+		FlightAllocator.Allocation[] plans;
 		
-		List<FlightInfo> flightSched = s.getRemainingAllocations();
-
-		for(FlightInfo f :flightSched)
+		if(parallelism == 1)
 		{
-			List<Aircraft> airLST = aircraftDAO.getAllAircraft();
-			List<CabinCrew> crewLST = crewDAO.getAllCabinCrew();
-			List<Pilot> pilotLST = crewDAO.getAllPilots();
-			
-			//List<Route> routeLST = routeDAO.getAllRoutes();
-			
-			boolean found = false;
-			
-			Aircraft a = airLST.get(0);
+			FlightAllocator allocator = new FlightAllocator(registry);
+			plans = new FlightAllocator.Allocation[pass.length];
 			
-			LocalDate localEndDate = f.getDepartureDateTime().toLocalDate();
-			int pass = passengerNumbersDAO.getPassengerNumbersFor(f.getFlight().getFlightNumber(),localEndDate);
-			
-			int countNew =0;
-			
-			while(! found)
+			for(int i = 0; i < pass.length; i++)
 			{
-				Collections.shuffle(airLST);
-				a = airLST.get(0);
-				countNew++;
-				int factor = a.getSeats() - pass;
-				
-				if(! s.hasConflict(a, f))
-				{
-					if(factor >= -100 && factor <= 100) //100 seems to be the best size after experimenting
-					{
-					found = true;
-					}
-					else if(countNew >= airLST.size())
-					{
-					found = true;	
-					}
-				}
+				FlightInfo f = flightSched.get(i);
+				plans[i] = allocator.plan(f, pass[i], s);
+				complete(s, f, plans[i], allocator);
 			}
+		}
+		else
+		{
+			plans = planInParallel(registry, flightSched, pass, startDate);
 			
-			try {
-				s.allocateAircraftTo(a, f);
-			} catch (DoubleBookedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-			
-			int crewPOS = -1;
-			int countc = 0;
-			
-			//boolean breaks = false;
-			
-			List<String> check = new ArrayList<String>();
-			check.clear();
+			//merge in departure order, a plan that clashes with one already merged from another block is made again
+			FlightAllocator merged = new FlightAllocator(registry);
 			
-			 
-			while(crewPOS == -1)
+			for(int i = 0; i < plans.length; i++)
 			{
-					
-				for(int i=0;i<a.getCabinCrewRequired();i++)
+				FlightInfo f = flightSched.get(i);
+				
+				if(! merged.isFree(plans[i], f, s))
 				{
-					//countc = 0;
-					
-					for(CabinCrew c: crewLST)
-					{
-						countc++;
-						
-						if(! s.hasConflict(c, f) && ! check.contains(c.getForename()+c.getSurname()))
-						{
-								if(c.getTypeRatings().contains(a.getTypeCode()))
-								{
-									if(c.getHomeBase().equals(a.getStartingPosition()))
-									{
-										
-										//if(flightSched.indexOf(f) >= 1)
-										//{
-										//	System.out.println(s.getCompletedAllocationsFor(c).get(flightSched.indexOf(f)).getLandingDateTime());
-										//	System.out.println(f.getDepartureDateTime());
-										//}
-										
-											
-											check.add(c.getForename()+c.getSurname());
-											crewPOS = crewLST.indexOf(c);
-											break;
-									}
-									else if(countc >= crewLST.size())
-									{
-										
-											
-												check.add(c.getForename()+c.getSurname());
-												crewPOS = crewLST.indexOf(c);
-												break;
-										
-									}
-								}
-								else if(countc >= crewLST.size())
-								{
-									
-									
-											check.add(c.getForename()+c.getSurname());
-											crewPOS = crewLST.indexOf(c);
-											break;
-
-								}
-							
-						}
-						
-						
-					}
-						if(crewPOS == -1)
-						{
-							break;
-						}
-						else
-						{
-							try {
-								s.allocateCabinCrewTo(crewLST.get(crewPOS), f);
-							} catch (DoubleBookedException e) {
-								// TODO Auto-generated catch block
-								e.printStackTrace();
-							}
-						}
-						
+					RETRIES.increment();
+					plans[i] = merged.plan(f, pass[i], s);
 				}
+				complete(s, f, plans[i], merged);
+			}
+		}
 		
-				}
-					
-			
-			
-			
-			
-			int capPOS = -1;
-			int count = 0;
+		if(optimizer == null)
+		{
+			GENERATE.stop(t);
+			return s;
+		}
+		
+		//the Schedule can't take allocations back, so the optimised plans are booked in a new one
+		long o1 = Metrics.start();
+		FlightAllocator.Allocation[] better = optimizer.optimise(registry, flightSched, pass, plans);
+		Schedule o = new Schedule(routeDAO, startDate, endDate);
+		List<FlightInfo> again = o.getRemainingAllocations();
+		FlightAllocator allocator = new FlightAllocator(registry);
+		
+		for(int i = 0; i < better.length; i++)
+		{
+			complete(o, again.get(i), better[i], allocator, false);
+		}
+		
+		OPTIMISE.stop(o1);
+		GENERATE.stop(t);
+		
+		//the optimizer only checks for overlapping flights, keep the first schedule if the Schedule turned anything down
+		return o.getCompletedAllocations().size() >= s.getCompletedAllocations().size() ? o : s;
+	}
+	
+	/**
+	 * Plans every flight, with each departure airport's DAY_BLOCK day blocks planned at the same time
+	 * by their own FlightAllocator, which only knows about the bookings in its block
+	 * @return the plan for each flight, in the same order as the flights
+	 */
+	private FlightAllocator.Allocation[] planInParallel(ResourceRegistry registry, List<FlightInfo> flights, int[] pass, LocalDate startDate) {
+		
+		//the flights in each block by index, each block in departure order
+		Map<String, List<Integer>> blocks = new LinkedHashMap<>();
+		
+		for(int i = 0; i < flights.size(); i++)
+		{
+			FlightInfo f = flights.get(i);
+			long block = ChronoUnit.DAYS.between(startDate, f.getDepartureDateTime().toLocalDate()) / DAY_BLOCK;
+			blocks.computeIfAbsent(f.getFlight().getDepartureAirportCode() + "/" + block, k -> new ArrayList<>()).add(i);
+		}
+		
+		FlightAllocator.Allocation[] plans = new FlightAllocator.Allocation[flights.size()];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		
+		try {
+			List<ForkJoinTask<?>> tasks = new ArrayList<>();
 			
-			while(capPOS == -1)
+			for(List<Integer> block : blocks.values())
 			{
-				count++;
-				for(Pilot p : pilotLST)
-				{
-					//System.out.println(pilotLST.size());
-					if(! s.hasConflict(p, f))
+				//each task only writes its own flights' slots
+				tasks.add(pool.submit(() -> {
+					FlightAllocator allocator = new FlightAllocator(registry);
+					
+					for(int i : block)
 					{
-						if(p.getRank().equals(Pilot.Rank.valueOf("CAPTAIN")))//&& 
-						{
-							if(p.getTypeRatings().contains(a.getTypeCode()))
-							{
-								capPOS = pilotLST.indexOf(p);
-								break;
-							}
-							else if(count >= pilotLST.size() && p.getHomeBase().equals(a.getStartingPosition()))
-							{
-								capPOS = pilotLST.indexOf(p);
-								break;
-							}
-							else if(count > pilotLST.size())
-							{
-								capPOS = pilotLST.indexOf(p);
-								break;
-							}
-						}
+						FlightInfo f = flights.get(i);
+						plans[i] = allocator.plan(f, pass[i], null);
+						allocator.book(plans[i], f, null);
 					}
-				}
-			}
-			
-			try {
-				s.allocateCaptainTo(pilotLST.get(capPOS), f);
-				//System.out.println(s.getRemainingAllocations().size());
-				//System.out.println(capPOS);
-			} catch (DoubleBookedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				}));
 			}
 			
-			int offPOS = -1;
-			int countO = 0;
-			
-			while(offPOS == -1)
+			for(ForkJoinTask<?> task : tasks)
 			{
-				countO++;
-				for(Pilot p : pilotLST)
-				{
-					if(! s.hasConflict(p, f))
-					{
-						
-						if(p.getRank().equals(Pilot.Rank.valueOf("FIRST_OFFICER")))
-						{
-							if(p.getTypeRatings().contains(a.getTypeCode()))
-							{
-								offPOS = pilotLST.indexOf(p);
-								break;
-							}
-							else if(count >= pilotLST.size() && p.getHomeBase().equals(a.getStartingPosition()))
-							{
-								offPOS = pilotLST.indexOf(p);
-								break;
-							}
-							else if(countO > pilotLST.size())
-							{
-								offPOS = pilotLST.indexOf(p);
-								break;
-							}	
-						}
-					}
-				}
+				task.join();
 			}
-			
+		}
+		finally {
+			pool.shutdown();
+		}
+		return plans;
+	}
+	
+	/**
+	 * Looks up the forecast for each flight, all on the calling thread
+	 * An on-demand DAO is first asked to fetch the whole horizon in one query rather than one per flight
+	 * @return the forecasts, in the same order as the flights
+	 */
+	static int[] passengersFor(List<FlightInfo> flights, IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate) {
+		
+		if(passengerNumbersDAO instanceof OnDemandPassengerNumbersDAO)
+		{
 			try {
-				//System.out.println(offPOS);
-				s.allocateFirstOfficerTo(pilotLST.get(offPOS), f);
-			} catch (DoubleBookedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				((OnDemandPassengerNumbersDAO) passengerNumbersDAO).prefetch(startDate, endDate);
+			} catch (DataLoadingException e) {
+				System.err.println("Error prefetching passenger numbers:" + e);
 			}
-			
-			//System.out.println("pls ive been working very hard");
-			
-			if (s.isValid(f) == true)
-			{
-				try {
-					s.completeAllocationFor(f);
-				} catch (InvalidAllocationException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-				 
-			}
-			else
+		}
+		
+		int[] pass = new int[flights.size()];
+		
+		for(int i = 0; i < pass.length; i++)
+		{
+			FlightInfo f = flights.get(i);
+			pass[i] = passengerNumbersDAO.getPassengerNumbersFor(f.getFlight().getFlightNumber(), f.getDepartureDateTime().toLocalDate());
+		}
+		return pass;
+	}
+	
+	/**
+	 * Books a flight's plan in the schedule and completes it if it's valid, reporting why if it isn't
+	 * @return true if the flight was completed
+	 */
+	static boolean complete(Schedule s, FlightInfo f, FlightAllocator.Allocation plan, FlightAllocator allocator) {
+		return complete(s, f, plan, allocator, true);
+	}
+	
+	/**
+	 * Books a flight's plan in the schedule and completes it if it's valid
+	 * @param report whether to say why a flight couldn't be completed
+	 * @return true if the flight was completed
+	 */
+	static boolean complete(Schedule s, FlightInfo f, FlightAllocator.Allocation plan, FlightAllocator allocator, boolean report) {
+		
+		LocalDate localEndDate = f.getDepartureDateTime().toLocalDate();
+		
+		if(plan.aircraft == -1)
+		{
+			if(report)
 			{
-				System.err.print("something went wrong");
+				System.err.println("No aircraft free for flight " + f.getFlight().getFlightNumber() + " on " + localEndDate);
 			}
-			
-			
-			
-			
-			
+			INVALID.increment();
+			return false;
 		}
-	
 		
-		return s;
+		allocator.book(plan, f, s);
+		
+		if (s.isValid(f) == true)
+		{
+			try {
+				s.completeAllocationFor(f);
+				COMPLETED.increment();
+				return true;
+			} catch (InvalidAllocationException e) {
+				System.err.println("Error completing flight " + f.getFlight().getFlightNumber() + " on " + localEndDate + ":" + e);
+			}
+		}
+		else if(report)
+		{
+			System.err.println("Not enough free crew for flight " + f.getFlight().getFlightNumber() + " on " + localEndDate);
+		}
+		INVALID.increment();
+		return false;
 	}
 }
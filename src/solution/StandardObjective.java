@@ -0,0 +1,119 @@
+package solution;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import baseclasses.Crew;
+import baseclasses.FlightInfo;
+
+/**
+ * The StandardObjective scores seat fit, aircraft position, home base and type rating, on the same scale as the
+ * FlightAllocator: an aircraft costs how far its seats are from the forecast (seats short count double), plus
+ * AircraftSelector.POSITION_PENALTY if its previous flight (or its starting position) leaves it somewhere other
+ * than the departure airport, and each crew member
+ * costs UNRATED_PENALTY if they aren't rated for the aircraft and AWAY_PENALTY if they aren't based at the
+ * departure airport. Airports and aircraft types are turned into ints up front so scoring is just array lookups
+ */
+public class StandardObjective implements ScheduleObjective {
+
+	private final int[] passengers;//by flight
+	private final int[] departure;
+	private final int[] arrival;
+	private final int[] seats;//by aircraft
+	private final int[] start;
+	private final int[] typeOf;
+	private final int[] pilotBase;
+	private final int[] cabinBase;
+	private final BitSet[] pilotsRated;//by type
+	private final BitSet[] cabinRated;
+
+	/**
+	 * Creates the objective for the given flights
+	 * @param registry the aircraft and crew
+	 * @param flights the flights being scheduled
+	 * @param passengers the forecast for each flight, or -1 where there isn't one
+	 */
+	public StandardObjective(ResourceRegistry registry, List<FlightInfo> flights, int[] passengers) {
+
+		Map<String, Integer> airports = new HashMap<>();
+		Map<String, Integer> types = new HashMap<>();
+
+		seats = new int[registry.aircraftCount()];
+		start = new int[registry.aircraftCount()];
+		typeOf = new int[registry.aircraftCount()];
+
+		for(int a = 0; a < typeOf.length; a++)
+		{
+			seats[a] = registry.aircraft(a).getSeats();
+			start[a] = number(airports, registry.aircraft(a).getStartingPosition());
+			typeOf[a] = number(types, registry.aircraft(a).getTypeCode());
+		}
+
+		pilotsRated = new BitSet[types.size()];
+		cabinRated = new BitSet[types.size()];
+
+		for(Map.Entry<String, Integer> e : types.entrySet())
+		{
+			pilotsRated[e.getValue()] = registry.pilotsRatedFor(e.getKey());
+			cabinRated[e.getValue()] = registry.cabinCrewRatedFor(e.getKey());
+		}
+
+		this.passengers = passengers;
+		departure = new int[flights.size()];
+		arrival = new int[flights.size()];
+
+		for(int f = 0; f < flights.size(); f++)
+		{
+			departure[f] = number(airports, flights.get(f).getFlight().getDepartureAirportCode());
+			arrival[f] = number(airports, flights.get(f).getFlight().getArrivalAirportCode());
+		}
+
+		pilotBase = new int[registry.pilotCount()];
+
+		for(int p = 0; p < pilotBase.length; p++)
+		{
+			pilotBase[p] = base(airports, registry.pilot(p));
+		}
+
+		cabinBase = new int[registry.cabinCrewCount()];
+
+		for(int c = 0; c < cabinBase.length; c++)
+		{
+			cabinBase[c] = base(airports, registry.cabinCrew(c));
+		}
+	}
+
+	@Override
+	public int aircraftCost(int flight, int aircraft) {
+		return AircraftSelector.seatCost(seats[aircraft], passengers[flight]);
+	}
+
+	@Override
+	public int positionCost(int flight, int aircraft, int previous) {
+		return (previous == -1 ? start[aircraft] : arrival[previous]) == departure[flight] ? 0 : AircraftSelector.POSITION_PENALTY;
+	}
+
+	@Override
+	public int pilotCost(int flight, int aircraft, int pilot) {
+		return (pilotsRated[typeOf[aircraft]].get(pilot) ? 0 : FlightAllocator.UNRATED_PENALTY)
+				+ (pilotBase[pilot] == departure[flight] ? 0 : FlightAllocator.AWAY_PENALTY);
+	}
+
+	@Override
+	public int cabinCrewCost(int flight, int aircraft, int cabinCrew) {
+		return (cabinRated[typeOf[aircraft]].get(cabinCrew) ? 0 : FlightAllocator.UNRATED_PENALTY)
+				+ (cabinBase[cabinCrew] == departure[flight] ? 0 : FlightAllocator.AWAY_PENALTY);
+	}
+
+	//crew based somewhere no flight departs from get an airport number of their own, which never matches
+	private static int base(Map<String, Integer> airports, Crew c) {
+		return number(airports, c.getHomeBase());
+	}
+
+	private static int number(Map<String, Integer> numbers, String key) {
+		return numbers.computeIfAbsent(key, k -> numbers.size());
+	}
+
+}